@@ -0,0 +1,97 @@
+package org.os;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Directory trees and files the benchmarks run against, created under a temporary directory
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    // a handful of files and directories, what a typical working directory looks like
+    public static Path smallTree() throws IOException {
+        Path root = Files.createTempDirectory("bench-small");
+        for (int i = 0; i < 16; i++)
+            Files.createFile(root.resolve("file" + i + ".txt"));
+        for (int i = 0; i < 4; i++)
+            Files.createDirectory(root.resolve("dir" + i));
+        Files.createFile(root.resolve(".hidden"));
+        return root;
+    }
+
+    // one flat directory with many entries, every tenth one a directory and every hundredth one hidden
+    public static Path wideTree(int entries) throws IOException {
+        Path root = Files.createTempDirectory("bench-wide");
+        for (int i = 0; i < entries; i++) {
+            if (i % 100 == 0)
+                Files.createFile(root.resolve(".hidden" + i));
+            else if (i % 10 == 0)
+                Files.createDirectory(root.resolve("dir" + i));
+            else
+                Files.createFile(root.resolve("file" + i + ".txt"));
+        }
+        return root;
+    }
+
+    // fanout directories per level down to depth, each with a few files
+    public static Path deepTree(int depth, int fanout, int filesPerDirectory) throws IOException {
+        Path root = Files.createTempDirectory("bench-deep");
+        fill(root, depth, fanout, filesPerDirectory);
+        return root;
+    }
+
+    private static void fill(Path directory, int depth, int fanout, int filesPerDirectory) throws IOException {
+        for (int i = 0; i < filesPerDirectory; i++)
+            Files.createFile(directory.resolve("file" + i + ".txt"));
+        if (depth == 0)
+            return;
+        for (int i = 0; i < fanout; i++) {
+            Path child = Files.createDirectory(directory.resolve("level" + depth + "-" + i));
+            fill(child, depth - 1, fanout, filesPerDirectory);
+        }
+    }
+
+    // text file of about size bytes made of numbered log lines
+    public static Path textFile(Path directory, String name, long size) throws IOException {
+        Path file = directory.resolve(name);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            long written = 0;
+            for (long line = 0; written < size; line++) {
+                String text = "2024-10-20 13:45:00 INFO request " + line + " served in " + (line % 997) + " ms\n";
+                writer.write(text);
+                written += text.length();
+            }
+        }
+        return file;
+    }
+
+    public static Path named(String shape) throws IOException {
+        return switch (shape) {
+            case "wide" -> wideTree(100_000);
+            case "deep" -> deepTree(6, 4, 3);
+            default -> smallTree();
+        };
+    }
+
+    // interpreter in the directory writing into nothing, with or without the listing cache
+    public static CommandLineInterpreter interpreter(Path directory, boolean cached) {
+        DirectoryCache cache = cached ? new DirectoryCache(1_000_000, 1_000_000) : new DirectoryCache(0, 0);
+        return new CommandLineInterpreter(directory.toFile(), cache,
+                OutputSink.stream(OutputStream.nullOutputStream(), OutputSink.FlushPolicy.SIZE));
+    }
+
+    public static void delete(Path root) throws IOException {
+        if (root == null || !Files.exists(root))
+            return;
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
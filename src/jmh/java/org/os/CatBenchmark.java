@@ -0,0 +1,47 @@
+package org.os;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// cat of a small (4 KB) and a huge (256 MB) file into nothing and into a file
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CatBenchmark {
+
+    @Param({"4096", "268435456"})
+    public long size;
+
+    private Path root;
+    private CommandLineInterpreter cli;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = java.nio.file.Files.createTempDirectory("bench-cat");
+        BenchmarkFixtures.textFile(root, "data.log", size);
+        cli = BenchmarkFixtures.interpreter(root, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.delete(root);
+    }
+
+    @Benchmark
+    public void cat() throws IOException {
+        cli.cat(List.of("cat", "data.log"));
+        cli.commandFinished();
+    }
+
+    @Benchmark
+    public void catTwice() throws IOException {
+        cli.cat(List.of("cat", "data.log", "data.log"));
+        cli.commandFinished();
+    }
+}
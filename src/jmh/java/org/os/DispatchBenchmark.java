@@ -0,0 +1,69 @@
+package org.os;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// what Main does for every line: parse it, look the command up and run it
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DispatchBenchmark {
+
+    private static final String LINE = "cat \"my file.txt\" notes | wc -l > count";
+
+    private Path root;
+    private CommandLineInterpreter cli;
+    private CommandRegistry registry;
+    private CommandParser uncachedParser;
+    private CommandParser cachedParser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = BenchmarkFixtures.smallTree();
+        cli = BenchmarkFixtures.interpreter(root, false);
+        registry = CommandRegistry.standard();
+        uncachedParser = new CommandParser(0);
+        cachedParser = new CommandParser();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.delete(root);
+    }
+
+    @Benchmark
+    public List<Job> parse() throws ParseException {
+        return uncachedParser.parse(LINE);
+    }
+
+    @Benchmark
+    public List<Job> parseCached() throws ParseException {
+        return cachedParser.parse(LINE);
+    }
+
+    @Benchmark
+    public void dispatchPwd() throws IOException {
+        registry.execute(cli, List.of("pwd"));
+    }
+
+    @Benchmark
+    public void parseAndDispatch(Blackhole blackhole) throws IOException, ParseException {
+        for (Job job : cachedParser.parse("pwd"))
+            registry.execute(cli, job);
+        blackhole.consume(cli.takeFailure());
+    }
+
+    @Benchmark
+    public void unknownCommand() throws IOException {
+        registry.execute(cli, List.of("notACommand"));
+        cli.takeFailure();
+    }
+}
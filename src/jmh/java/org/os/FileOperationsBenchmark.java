@@ -0,0 +1,63 @@
+package org.os;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// touch, mkdir, mv and rm, each paired with its inverse so every invocation starts from the same tree
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileOperationsBenchmark {
+
+    private Path root;
+    private CommandLineInterpreter cli;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = BenchmarkFixtures.smallTree();
+        Files.createFile(root.resolve("moving.txt"));
+        cli = BenchmarkFixtures.interpreter(root, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.delete(root);
+    }
+
+    @Benchmark
+    public void touchAndRm() throws IOException {
+        cli.touch(List.of("touch", "created.txt"));
+        cli.rm(List.of("rm", "created.txt"));
+    }
+
+    @Benchmark
+    public void touchNestedAndRm() throws IOException {
+        cli.touch(List.of("touch", "dir0/created.txt"));
+        cli.rm(List.of("rm", "dir0/created.txt"));
+    }
+
+    @Benchmark
+    public void mkdirAndRmdir() {
+        cli.mkdir(List.of("mkdir", "created"));
+        cli.rmdir(List.of("rmdir", "created"));
+    }
+
+    @Benchmark
+    public void mvRenameTwice() {
+        cli.mv(List.of("mv", "moving.txt", "moved.txt"));
+        cli.mv(List.of("mv", "moved.txt", "moving.txt"));
+    }
+
+    @Benchmark
+    public void mvIntoDirectoryAndBack() {
+        cli.mv(List.of("mv", "moving.txt", "dir1"));
+        cli.mv(List.of("mv", "dir1/moving.txt", "."));
+    }
+}
@@ -0,0 +1,51 @@
+package org.os;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ls, ls -a, ls -r and ls -l on small, wide (100k entries) and deep trees, cold and from the listing cache
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ListingBenchmark {
+
+    @Param({"small", "wide", "deep"})
+    public String shape;
+
+    @Param({"ls", "ls -a", "ls -r", "ls -l"})
+    public String variant;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private Path root;
+    private CommandLineInterpreter cli;
+    private CommandRegistry registry;
+    private List<String> tokens;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = BenchmarkFixtures.named(shape);
+        cli = BenchmarkFixtures.interpreter(root, cached);
+        registry = CommandRegistry.standard();
+        tokens = Arrays.asList(variant.split(" "));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.delete(root);
+    }
+
+    @Benchmark
+    public void list() throws IOException {
+        registry.execute(cli, tokens);
+        cli.commandFinished();
+    }
+}
@@ -0,0 +1,83 @@
+package org.os;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// The per-entry java.io.File lookups ls used to make against the bulk attribute read of DirectoryLister,
+// on a directory of 100k entries, for the short listing and for ls -l.
+// Every java.io.File metadata call (isDirectory, length, lastModified, canRead ...) is one stat, the
+// lister reads the attributes of an entry once. Run it under `strace -f -c -e trace=%stat` to count them:
+// mvn -P benchmarks verify -Djmh.args="LsAttributeBenchmark -f 1"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LsAttributeBenchmark {
+
+    @Param({"100000"})
+    public int entries;
+
+    @Param({"file", "bulk"})
+    public String lookup;
+
+    @Param({"false", "true"})
+    public boolean longListing;
+
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = BenchmarkFixtures.wideTree(entries);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.delete(root);
+    }
+
+    @Benchmark
+    public void list(Blackhole blackhole) throws IOException {
+        if (lookup.equals("bulk"))
+            new DirectoryLister(false, false, longListing).list(root, Writer.nullWriter());
+        else if (longListing)
+            legacyLong(root.toFile(), blackhole);
+        else
+            legacyShort(root.toFile(), blackhole);
+    }
+
+    // what the ls loop did before: listFiles then one lookup per question
+    private static void legacyShort(File directory, Blackhole blackhole) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            if (file.isHidden())
+                continue;
+            blackhole.consume(file.isDirectory());
+        }
+    }
+
+    // the same listing with size, mtime and permissions taken from java.io.File
+    private static void legacyLong(File directory, Blackhole blackhole) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            if (file.isHidden())
+                continue;
+            blackhole.consume(file.isDirectory());
+            blackhole.consume(file.length());
+            blackhole.consume(file.lastModified());
+            blackhole.consume(file.canRead());
+            blackhole.consume(file.canWrite());
+            blackhole.consume(file.canExecute());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.os;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// > and >> of a 1 KB and a 1 MB output
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RedirectBenchmark {
+
+    @Param({"1024", "1048576"})
+    public int size;
+
+    private Path root;
+    private CommandLineInterpreter cli;
+    private String output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("bench-redirect");
+        cli = BenchmarkFixtures.interpreter(root, false);
+        output = "x".repeat(size - 1) + "\n";
+    }
+
+    // >> would otherwise grow the file for the whole run
+    @Setup(Level.Iteration)
+    public void truncate() throws IOException {
+        Files.deleteIfExists(root.resolve("out.txt"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.delete(root);
+    }
+
+    @Benchmark
+    public void greaterThan() throws IOException {
+        cli.greaterThan(output, "out");
+    }
+
+    @Benchmark
+    public void greaterThanThan() throws IOException {
+        cli.greaterThanThan(output, "out");
+    }
+}
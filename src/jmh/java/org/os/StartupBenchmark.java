@@ -0,0 +1,101 @@
+package org.os;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// A new CLI process, from the launch until the first prompt and until the result of the first command,
+// with and without the class data archive of mvn -P appcds package. Needs the jar and the archive:
+// mvn -P appcds package, then mvn -P benchmarks verify -Djmh.args="StartupBenchmark"
+// (-Dcli.jar and -Dcli.archive in the jmh.args point elsewhere than target/)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class StartupBenchmark {
+
+    @Param({"off", "appcds"})
+    public String sharing;
+
+    private Path jar;
+    private Path archive;
+    private Path directory;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        jar = Path.of(System.getProperty("cli.jar", "target/cli-1.0-SNAPSHOT.jar")).toAbsolutePath();
+        archive = Path.of(System.getProperty("cli.archive", "target/cli.jsa")).toAbsolutePath();
+        if (!Files.isRegularFile(jar))
+            throw new IllegalStateException(jar + " not found, run mvn package first");
+        if (sharing.equals("appcds") && !Files.isRegularFile(archive))
+            throw new IllegalStateException(archive + " not found, run mvn -P appcds package first");
+        directory = BenchmarkFixtures.smallTree();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.delete(directory);
+    }
+
+    // the end of the input ends the CLI, the exit is not part of the measurement
+    @TearDown(Level.Invocation)
+    public void stopProcess() throws InterruptedException, IOException {
+        process.getOutputStream().close();
+        if (!process.waitFor(10, TimeUnit.SECONDS))
+            process.destroyForcibly().waitFor();
+    }
+
+    @Benchmark
+    public void timeToFirstPrompt() throws IOException {
+        process = start();
+        readUntil(process.getInputStream(), directory + " > ");
+    }
+
+    @Benchmark
+    public void timeToFirstCommandResult() throws IOException {
+        process = start();
+        OutputStream input = process.getOutputStream();
+        input.write(("pwd" + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        input.flush();
+        // the prompt, then the directory printed by pwd
+        readUntil(process.getInputStream(), "> " + directory + System.lineSeparator());
+    }
+
+    private Process start() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (sharing.equals("appcds")) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+            command.add("-Xlog:cds=off");
+            command.add("-Xlog:cds+dynamic=off");
+        }
+        command.add("-cp");
+        command.add(jar.toString());
+        command.add("org.os.Main");
+        return new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true).start();
+    }
+
+    private static void readUntil(InputStream output, String expected) throws IOException {
+        byte[] wanted = expected.getBytes(StandardCharsets.UTF_8);
+        int matched = 0;
+        int b;
+        while ((b = output.read()) >= 0) {
+            // restart the match, the current byte may begin it again
+            if (b != (wanted[matched] & 0xFF))
+                matched = b == (wanted[0] & 0xFF) ? 0 : -1;
+            if (++matched == wanted.length)
+                return;
+        }
+        throw new IOException("the CLI ended before printing " + expected);
+    }
+}
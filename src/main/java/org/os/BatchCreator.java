@@ -0,0 +1,115 @@
+package org.os;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+// mkdir --batch / touch --batch: creates many paths at once on the common ForkJoinPool.
+// The parent directories are collected first and only the deepest ones are created, each once,
+// with Files.createDirectories, so a thousand files in the same directory cost one mkdir and not a thousand.
+// Then the entries themselves are created in parallel with createDirectory / createFile
+public class BatchCreator {
+
+    //failures kept for the report, the count goes on
+    private static final int MAX_FAILURE_MESSAGES = 10;
+
+    public record Result(long created, long existing, long failures, long parentDirectories, long nanos,
+                         List<String> failureMessages) {
+    }
+
+    private final Path base;
+
+    public BatchCreator(Path base) {
+        this.base = base;
+    }
+
+    public Result createDirectories(Collection<String> names) {
+        return create(names, true);
+    }
+
+    public Result createFiles(Collection<String> names) {
+        return create(names, false);
+    }
+
+    private Result create(Collection<String> names, boolean directories) {
+        long start = System.nanoTime();
+        // the same name twice is created once
+        List<Path> targets = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(names))
+            targets.add(base.resolve(name).normalize());
+
+        Set<Path> parents = new HashSet<>();
+        for (Path target : targets) {
+            if (target.getParent() != null)
+                parents.add(target.getParent());
+        }
+        // a parent that is the ancestor of another one is created along with it
+        Set<Path> ancestors = new HashSet<>();
+        for (Path parent : parents) {
+            for (Path ancestor = parent.getParent(); ancestor != null && ancestors.add(ancestor); )
+                ancestor = ancestor.getParent();
+        }
+        List<Path> deepest = new ArrayList<>();
+        for (Path parent : parents) {
+            if (!ancestors.contains(parent) && !Files.isDirectory(parent))
+                deepest.add(parent);
+        }
+        // a missing target directory that is also a parent is made by createDirectories, it still counts as created
+        Set<Path> madeAsParent = new HashSet<>();
+        if (directories) {
+            for (Path target : targets) {
+                if ((parents.contains(target) || ancestors.contains(target)) && !Files.exists(target))
+                    madeAsParent.add(target);
+            }
+        }
+
+        LongAdder created = new LongAdder();
+        LongAdder existing = new LongAdder();
+        AtomicInteger failures = new AtomicInteger();
+        Queue<String> failureMessages = new ConcurrentLinkedQueue<>();
+
+        IntStream.range(0, deepest.size()).parallel().forEach(i -> {
+            try {
+                Files.createDirectories(deepest.get(i));
+            } catch (IOException e) {
+                failed(failures, failureMessages, deepest.get(i), e);
+            }
+        });
+        IntStream.range(0, targets.size()).parallel().forEach(i -> {
+            Path target = targets.get(i);
+            try {
+                if (directories)
+                    Files.createDirectory(target);
+                else
+                    Files.createFile(target);
+                created.increment();
+            } catch (FileAlreadyExistsException e) {
+                if (madeAsParent.contains(target))
+                    created.increment();
+                else
+                    existing.increment();
+            } catch (IOException e) {
+                failed(failures, failureMessages, target, e);
+            }
+        });
+        return new Result(created.sum(), existing.sum(), failures.get(), deepest.size(), System.nanoTime() - start,
+                List.copyOf(failureMessages));
+    }
+
+    private void failed(AtomicInteger failures, Queue<String> failureMessages, Path path, IOException e) {
+        if (failures.incrementAndGet() <= MAX_FAILURE_MESSAGES)
+            failureMessages.add(base.relativize(path) + ": " + e.getClass().getSimpleName() + " " + e.getMessage());
+    }
+}
@@ -0,0 +1,162 @@
+package org.os;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fixed size byte ring buffer between two pipeline stages.
+// The writer blocks while the buffer is full (backpressure) and the reader while it is empty,
+// closing the writing end is end of input for the reader, closing the reading end makes
+// further writes fail with "Broken pipe" so the writer stops early
+public class BoundedPipe {
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final byte[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    //next byte to read, number of bytes waiting
+    private int head;
+    private int size;
+    private boolean writerClosed;
+    private boolean readerClosed;
+
+    private final InputStream source = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return BoundedPipe.this.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            closeReader();
+        }
+    };
+
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            BoundedPipe.this.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            closeWriter();
+        }
+    };
+
+    public BoundedPipe() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public BoundedPipe(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    // reading end, for the next stage
+    public InputStream source() {
+        return source;
+    }
+
+    // writing end, for the previous stage
+    public OutputStream sink() {
+        return sink;
+    }
+
+    private int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        lock.lock();
+        try {
+            while (size == 0) {
+                if (writerClosed)
+                    return -1;
+                if (readerClosed)
+                    throw new IOException("Pipe closed");
+                notEmpty.awaitUninterruptibly();
+            }
+            int count = Math.min(len, size);
+            // at most two copies, before and after the end of the ring
+            int first = Math.min(count, buffer.length - head);
+            System.arraycopy(buffer, head, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, count - first);
+            head = (head + count) % buffer.length;
+            size -= count;
+            notFull.signal();
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        lock.lock();
+        try {
+            while (len > 0) {
+                while (size == buffer.length && !readerClosed)
+                    notFull.awaitUninterruptibly();
+                if (readerClosed)
+                    throw new IOException("Broken pipe");
+                if (writerClosed)
+                    throw new IOException("Pipe closed");
+                int tail = (head + size) % buffer.length;
+                int count = Math.min(len, buffer.length - size);
+                int first = Math.min(count, buffer.length - tail);
+                System.arraycopy(b, off, buffer, tail, first);
+                System.arraycopy(b, off + first, buffer, 0, count - first);
+                size += count;
+                off += count;
+                len -= count;
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeWriter() {
+        lock.lock();
+        try {
+            writerClosed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeReader() {
+        lock.lock();
+        try {
+            readerClosed = true;
+            size = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.os;
+
+import java.io.IOException;
+
+// One command of the CLI, looked up by name in a CommandRegistry
+public interface Command {
+
+    void execute(CommandLineInterpreter cli, Invocation invocation) throws IOException;
+}
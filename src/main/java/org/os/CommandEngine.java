@@ -0,0 +1,67 @@
+package org.os;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.List;
+
+// The part of the CLI shared by every session of the process: the frozen command table and the listing cache.
+// Nothing in it changes once it is built, what a command changes is in the Session it runs for, so one engine
+// serves any number of sessions at the same time, each on its own thread
+public class CommandEngine {
+
+    private final CommandRegistry registry;
+    private final DirectoryCache directoryCache;
+
+    public CommandEngine(CommandRegistry registry, DirectoryCache directoryCache) {
+        this.registry = registry.freeze();
+        this.directoryCache = directoryCache;
+    }
+
+    // all the commands of the CLI with the cache of the process
+    public static CommandEngine standard() {
+        return new CommandEngine(CommandRegistry.standard(), DirectoryCache.getDefault());
+    }
+
+    public CommandRegistry getRegistry() {
+        return registry;
+    }
+
+    // a new session in the given directory writing to the given sink
+    public CommandLineInterpreter openSession(File directory, OutputSink output) {
+        return openSession(directory, null, output);
+    }
+
+    // the same reading the given input instead of the console, e.g. the stdin of a DaemonClient
+    public CommandLineInterpreter openSession(File directory, InputStream input, OutputSink output) {
+        return new CommandLineInterpreter(new Session(directory, input, output), directoryCache);
+    }
+
+    // runs one line typed in the session, false when it was exit (nothing after it runs)
+    public boolean execute(CommandLineInterpreter cli, String line) throws IOException {
+        List<Job> jobs;
+        try {
+            jobs = parse(cli, line);
+        } catch (ParseException e) {
+            cli.reportError(e.getMessage());
+            return true;
+        }
+        for (Job job : jobs) {
+            if (CommandRegistry.isExit(job.getStages().get(0).getName()))
+                return false;
+            execute(cli, job);
+        }
+        return true;
+    }
+
+    // the jobs of a line, parsed like the session parses what is typed in it
+    public List<Job> parse(CommandLineInterpreter cli, String line) throws ParseException {
+        return cli.getSession().getParser().parse(line);
+    }
+
+    // one job of a line, for callers that handle the line themselves (ScriptRunner counts and stops per job)
+    public void execute(CommandLineInterpreter cli, Job job) throws IOException {
+        registry.execute(cli, job);
+    }
+}
@@ -0,0 +1,105 @@
+package org.os;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight Recorder events of the CLI, shown next to the GC and file I/O events of the JDK in the same recording.
+// When no recording asks for them, begin() and shouldCommit() are a check of a static flag and the event object
+// does not escape, so the JIT removes it: the fields are only filled after shouldCommit()
+public final class CommandEvents {
+
+    private CommandEvents() {
+    }
+
+    @Name("org.os.Command")
+    @Label("Command")
+    @Category("CLI")
+    @Description("One command from the moment the registry dispatches it until it returns")
+    @StackTrace(false)
+    public static class CommandEvent extends Event {
+        @Label("Command")
+        public String command;
+
+        @Label("Arguments")
+        public String arguments;
+
+        @Label("Directory")
+        public String directory;
+
+        @Label("Errors")
+        public long errors;
+
+        @Label("Bytes Read")
+        @DataAmount
+        public long bytesRead;
+
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytesWritten;
+
+        @Label("Entries")
+        public long entries;
+    }
+
+    @Name("org.os.DirectoryListing")
+    @Label("Directory Listing")
+    @Category("CLI")
+    @StackTrace(false)
+    public static class DirectoryListingEvent extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Entries")
+        public long entries;
+    }
+
+    @Name("org.os.FileRead")
+    @Label("File Read")
+    @Category("CLI")
+    @Description("A file read whole by cat, grep, wc or cp")
+    @StackTrace(false)
+    public static class FileReadEvent extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("org.os.FileWrite")
+    @Label("File Write")
+    @Category("CLI")
+    @Description("A file written by cp")
+    @StackTrace(false)
+    public static class FileWriteEvent extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("org.os.Redirection")
+    @Label("Redirection")
+    @Category("CLI")
+    @Description("Output of a command going to a file with > or >>, from the open to the close of the file")
+    @StackTrace(false)
+    public static class RedirectionEvent extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Append")
+        public boolean append;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+}
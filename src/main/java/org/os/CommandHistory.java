@@ -0,0 +1,418 @@
+package org.os;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+// The lines typed at the prompt, kept in ~/.cli_history (-Dcli.history) across runs.
+// The file is a header and the lines one after the other, each ending with \n, mapped in memory: adding a line
+// copies its bytes into the mapping and moves the end in the header, there is no system call, the kernel writes
+// the pages back. The start of every line is in an int array, so line n, the last lines or a search from the
+// newest line back never decode more than they show.
+// Once the log has doubled since it was last compacted, or holds more than cli.history.size lines, a virtual
+// thread rewrites it without the older copies of repeated lines and swaps it in: the numbers of the lines change
+// then, like after a new start of the shell.
+// The first CLI to open the file owns it (a file lock), others read it once and keep what they add to themselves
+public class CommandHistory implements Closeable {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1_000_000;
+
+    //header: magic, version, end of the last line, end right after the last compaction
+    private static final int MAGIC = 0x434c4948;
+    private static final int VERSION = 1;
+    private static final int END = 8;
+    private static final int COMPACTED_END = 16;
+    private static final int HEADER = 32;
+
+    //first mapping, doubled when it is full
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    //no compaction below this size, whatever the duplicates
+    private static final int MIN_COMPACTION_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final int maxEntries;
+
+    //null when another process owns the file, then the log is a heap copy
+    private FileChannel channel;
+    private FileLock lock;
+    private ByteBuffer log;
+
+    //start of every line, oldest first
+    private int[] offsets = new int[1024];
+    private int count;
+    private int end;
+    private boolean compacting;
+    //a compaction that failed is not tried again before the next start
+    private boolean compactionFailed;
+    //changed by clear(), a compaction of the lines before it must not bring them back
+    private int generation;
+
+    private CommandHistory(Path file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+    }
+
+    // -Dcli.history, or .cli_history in the home directory
+    public static Path defaultFile() {
+        String history = System.getProperty("cli.history");
+        if (history != null)
+            return Path.of(history);
+        return Path.of(System.getProperty("user.home"), ".cli_history");
+    }
+
+    public static CommandHistory open(Path file) throws IOException {
+        return open(file, Integer.getInteger("cli.history.size", DEFAULT_MAX_ENTRIES));
+    }
+
+    public static CommandHistory open(Path file, int maxEntries) throws IOException {
+        CommandHistory history = new CommandHistory(file, maxEntries);
+        history.load();
+        history.compactIfNeeded();
+        return history;
+    }
+
+    private void load() throws IOException {
+        FileChannel opened = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean empty = opened.size() == 0;
+        FileLock acquired = opened.tryLock();
+        if (acquired == null) {
+            // another CLI appends to it, read what is there and leave the file alone
+            try (opened) {
+                ByteBuffer copy = ByteBuffer.allocate((int) Math.max(opened.size(), INITIAL_CAPACITY));
+                while (copy.hasRemaining() && opened.read(copy) >= 0) {
+                }
+                log = copy;
+            }
+        } else {
+            channel = opened;
+            lock = acquired;
+            map(Math.max((int) Math.min(channel.size(), Integer.MAX_VALUE), INITIAL_CAPACITY));
+        }
+        if (empty)
+            initialize();
+        long logEnd = log.getLong(END);
+        if (log.getInt(0) != MAGIC || log.getInt(4) != VERSION || logEnd < HEADER || logEnd > log.capacity()) {
+            close();
+            throw new IOException(file + " is not a history file");
+        }
+        end = (int) logEnd;
+        index(HEADER);
+    }
+
+    private void initialize() {
+        log.putInt(0, MAGIC);
+        log.putInt(4, VERSION);
+        log.putLong(END, HEADER);
+        log.putLong(COMPACTED_END, HEADER);
+    }
+
+    private void map(int capacity) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        log = mapped;
+    }
+
+    // the starts of the lines from the given offset to the end
+    private void index(int from) {
+        int start = from;
+        for (int i = from; i < end; i++) {
+            if (log.get(i) == '\n') {
+                addOffset(start);
+                start = i + 1;
+            }
+        }
+    }
+
+    private void addOffset(int offset) {
+        if (count == offsets.length)
+            offsets = Arrays.copyOf(offsets, count * 2);
+        offsets[count++] = offset;
+    }
+
+    // adds a line typed at the prompt, not a blank one nor the same as the one before
+    public synchronized void add(String line) {
+        if (line.isBlank() || (count > 0 && line.equals(get(count))))
+            return;
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        if ((long) end + bytes.length > Integer.MAX_VALUE)
+            return;
+        try {
+            ensureCapacity(end + bytes.length);
+        } catch (IOException e) {
+            // a full disk costs the history, not the command
+            return;
+        }
+        log.put(end, bytes);
+        addOffset(end);
+        end += bytes.length;
+        // the line is there before the header says so
+        log.putLong(END, end);
+        compactIfNeeded();
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if (needed <= log.capacity())
+            return;
+        int capacity = (int) Math.min(Math.max((long) log.capacity() * 2, needed), Integer.MAX_VALUE);
+        if (channel != null) {
+            map(capacity);
+        } else {
+            ByteBuffer larger = ByteBuffer.allocate(capacity);
+            larger.put(0, log, 0, end);
+            log = larger;
+        }
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    // line n, the first is 1
+    public synchronized String get(int n) {
+        Objects.checkIndex(n - 1, count);
+        int start = offsets[n - 1];
+        int length = lineEnd(n - 1) - start;
+        byte[] bytes = new byte[length];
+        log.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // end of line i without the \n
+    private int lineEnd(int i) {
+        return (i + 1 < count ? offsets[i + 1] : end) - 1;
+    }
+
+    // the number of the newest line before line `before` containing text, 0 when there is none.
+    // The bytes are compared in the log, nothing is decoded
+    public synchronized int search(String text, int before) {
+        return find(text, before, false);
+    }
+
+    private int find(String text, int before, boolean prefix) {
+        byte[] wanted = text.getBytes(StandardCharsets.UTF_8);
+        for (int i = Math.min(before, count + 1) - 2; i >= 0; i--) {
+            if (contains(offsets[i], lineEnd(i), wanted, prefix))
+                return i + 1;
+        }
+        return 0;
+    }
+
+    private boolean contains(int from, int to, byte[] wanted, boolean prefix) {
+        int last = prefix ? Math.min(from, to - wanted.length) : to - wanted.length;
+        for (int i = from; i <= last; i++) {
+            int j = 0;
+            while (j < wanted.length && log.get(i + j) == wanted[j])
+                j++;
+            if (j == wanted.length)
+                return true;
+        }
+        return false;
+    }
+
+    // !! the last line, !n line n, !-n the nth line back, !text the newest line starting with text,
+    // !?text the newest line containing it; other lines as they are
+    public String expand(String line) throws ParseException {
+        String event = line.strip();
+        if (!event.startsWith("!") || event.length() == 1)
+            return line;
+        int n;
+        synchronized (this) {
+            String designator = event.substring(1);
+            if (designator.equals("!")) {
+                n = count;
+            } else if (designator.startsWith("?")) {
+                String text = designator.endsWith("?") && designator.length() > 1
+                        ? designator.substring(1, designator.length() - 1) : designator.substring(1);
+                n = text.isEmpty() ? 0 : find(text, count + 1, false);
+            } else if (designator.matches("-?\\d+")) {
+                int number = Integer.parseInt(designator);
+                n = number < 0 ? count + 1 + number : number;
+            } else {
+                n = find(designator, count + 1, true);
+            }
+            if (n >= 1 && n <= count)
+                return get(n);
+        }
+        throw new ParseException(event + ": event not found", 0);
+    }
+
+    // the last lines (all when limit is negative) as "  number  line"
+    public synchronized List<String> tail(int limit) {
+        int first = limit < 0 ? 1 : Math.max(1, count - limit + 1);
+        List<String> lines = new ArrayList<>(count - first + 1);
+        for (int n = first; n <= count; n++)
+            lines.add(String.format("%5d  %s", n, get(n)));
+        return lines;
+    }
+
+    // forget every line, in the file too
+    public synchronized void clear() {
+        generation++;
+        count = 0;
+        end = HEADER;
+        log.putLong(END, HEADER);
+        log.putLong(COMPACTED_END, HEADER);
+    }
+
+    private void compactIfNeeded() {
+        if (channel == null || compacting || compactionFailed)
+            return;
+        long compactedEnd = log.getLong(COMPACTED_END);
+        boolean grown = end - HEADER >= MIN_COMPACTION_SIZE && end - HEADER > 2 * (compactedEnd - HEADER);
+        if (grown || count > maxEntries) {
+            compacting = true;
+            Thread.ofVirtual().name("history-compaction").start(this::compact);
+        }
+    }
+
+    // writes the newest copy of every line, at most maxEntries of them, then what was added meanwhile,
+    // to a new file that replaces the log. Only the copy at the end holds the lock
+    private void compact() {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        FileChannel target = null;
+        boolean swapped = false;
+        try {
+            ByteBuffer snapshot;
+            int[] snapshotOffsets;
+            int snapshotCount;
+            int snapshotEnd;
+            int snapshotGeneration;
+            synchronized (this) {
+                // lines are only added behind snapshotEnd, a remap leaves the old mapping readable
+                snapshotGeneration = generation;
+                snapshot = log;
+                snapshotOffsets = offsets;
+                snapshotCount = count;
+                snapshotEnd = end;
+            }
+            Set<String> seen = new HashSet<>();
+            List<byte[]> kept = new ArrayList<>();
+            for (int i = snapshotCount - 1; i >= 0 && kept.size() < maxEntries; i--) {
+                int start = snapshotOffsets[i];
+                int next = i + 1 < snapshotCount ? snapshotOffsets[i + 1] : snapshotEnd;
+                byte[] bytes = new byte[next - start];
+                snapshot.get(start, bytes);
+                if (seen.add(new String(bytes, StandardCharsets.UTF_8)))
+                    kept.add(bytes);
+            }
+            target = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            FileLock targetLock = target.lock();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            target.position(HEADER);
+            long position = HEADER;
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            for (int i = kept.size() - 1; i >= 0; i--)
+                position += write(target, buffer, kept.get(i));
+            long compactedEnd = position;
+            synchronized (this) {
+                // closed, or cleared: what was written is no longer the history
+                if (channel == null || generation != snapshotGeneration) {
+                    target.close();
+                    Files.deleteIfExists(compacted);
+                    return;
+                }
+                for (int i = snapshotEnd; i < end; ) {
+                    int length = Math.min(end - i, buffer.capacity());
+                    byte[] bytes = new byte[length];
+                    log.get(i, bytes);
+                    position += write(target, buffer, bytes);
+                    i += length;
+                }
+                flush(target, buffer);
+                header.putInt(0, MAGIC).putInt(4, VERSION).putLong(END, position).putLong(COMPACTED_END, compactedEnd);
+                target.write(header, 0);
+                target.force(false);
+                // the lock is on the file, not its name: the new log is owned before anyone can open it
+                Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                lock.release();
+                channel.close();
+                channel = target;
+                lock = targetLock;
+                map((int) Math.max(position, INITIAL_CAPACITY));
+                end = (int) position;
+                count = 0;
+                index(HEADER);
+                swapped = true;
+            }
+        } catch (IOException e) {
+            // the log stays as it is, the next start tries again
+            System.err.println("history: cannot compact " + file + ": " + e.getMessage());
+            synchronized (this) {
+                compactionFailed = true;
+            }
+            try {
+                if (target != null)
+                    target.close();
+                Files.deleteIfExists(compacted);
+            } catch (IOException ignored) {
+            }
+        } finally {
+            synchronized (this) {
+                compacting = false;
+                notifyAll();
+                // lines added meanwhile may be enough for another round
+                if (swapped)
+                    compactIfNeeded();
+            }
+        }
+    }
+
+    private static int write(FileChannel target, ByteBuffer buffer, byte[] bytes) throws IOException {
+        if (buffer.remaining() < bytes.length)
+            flush(target, buffer);
+        if (bytes.length > buffer.capacity()) {
+            ByteBuffer large = ByteBuffer.wrap(bytes);
+            while (large.hasRemaining())
+                target.write(large);
+        } else {
+            buffer.put(bytes);
+        }
+        return bytes.length;
+    }
+
+    private static void flush(FileChannel target, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            target.write(buffer);
+        buffer.clear();
+    }
+
+    // the pages go to the disk, the file is free for the next CLI
+    @Override
+    public synchronized void close() throws IOException {
+        // a compaction owns a lock on its copy of the file, let it finish or give up first
+        boolean interrupted = false;
+        while (compacting) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (channel == null)
+            return;
+        if (log instanceof MappedByteBuffer mapped)
+            mapped.force();
+        lock.release();
+        channel.close();
+        channel = null;
+    }
+}
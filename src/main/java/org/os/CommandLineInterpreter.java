@@ -1,42 +1,158 @@
 package org.os;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Scanner;
+import java.util.function.LongPredicate;
+import java.util.regex.PatternSyntaxException;
 
 public class CommandLineInterpreter {
 
-    //the directory that you open the CLI from
-    private File currentDirectory;
+    //biggest piece handed to transferTo in one call
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
 
-    //list of files of directory
-    private File[] files;
+    //directory, environment, streams and jobs of the session this interpreter works for
+    private final Session session;
+
+    //listings of recently listed directories, shared with the other interpreters of the process
+    private final DirectoryCache directoryCache;
+
+    //where rm --async moves what it removes, shared like the cache
+    private final Trash trash;
 
     public CommandLineInterpreter(File initialDirectory) {
-        this.currentDirectory = initialDirectory;
+        this(initialDirectory, DirectoryCache.getDefault());
+    }
+
+    // the console flushed after every print, like System.out.println
+    public CommandLineInterpreter(File initialDirectory, DirectoryCache directoryCache) {
+        this(initialDirectory, directoryCache, OutputSink.console(OutputSink.FlushPolicy.EVERY_WRITE));
+    }
+
+    public CommandLineInterpreter(File initialDirectory, DirectoryCache directoryCache, OutputSink output) {
+        this(new Session(initialDirectory, output), directoryCache);
+    }
+
+    // the commands, run for the given session. Nothing of the session is kept anywhere else
+    public CommandLineInterpreter(Session session, DirectoryCache directoryCache) {
+        this(session, directoryCache, Trash.getDefault());
+    }
+
+    public CommandLineInterpreter(Session session, DirectoryCache directoryCache, Trash trash) {
+        this.session = session;
+        this.directoryCache = directoryCache;
+        this.trash = trash;
+    }
+
+    // interpreter in the same directory that reads and writes the given streams (null keeps the current one),
+    // e.g. one stage of a pipeline. cd in it does not change the directory of this one
+    public CommandLineInterpreter withStreams(InputStream input, OutputSink output) {
+        return new CommandLineInterpreter(session.withStreams(input, output), directoryCache, trash);
+    }
+
+    // interpreter of a background job: the directory of this one at the time of the call, nothing to read,
+    // and a failure flag of its own so the job does not fail the command typed next
+    public CommandLineInterpreter forJob(OutputSink output) {
+        return new CommandLineInterpreter(session.forJob(output), directoryCache, trash);
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public JobControl getJobs() {
+        return session.getJobs();
+    }
+
+    private File currentDirectory() {
+        return session.getCurrentDirectory();
+    }
+
+    private InputStream in() {
+        return session.getInput();
+    }
+
+    private OutputSink out() {
+        return session.getOutput();
+    }
+
+    public OutputSink getOutput() {
+        return session.getOutput();
+    }
+
+    // end of a command, the output is flushed if its policy asks for it
+    public void commandFinished() {
+        out().commandFinished();
     }
 
     // Display help message for internal commands and supported system commands
     public void displayHelp() {
-        System.out.println("Available Commands:");
-        System.out.println(" - pwd, cd, ls, ls -a, ls -r, mkdir, rmdir, touch, mv, rm, cat");
-        System.out.println(" - >, >>, | (supports limited redirection and piping)");
-        System.out.println(" - exit: To terminate the CLI");
-        System.out.println(" - help: Displays this help message");
+        out().println("Available Commands:");
+        out().println(" - pwd, cd, ls, ls -a, ls -r, mkdir, rmdir, touch, mv, rm, cat");
+        out().println(" - >, >>, | (supports limited redirection and piping)");
+        out().println(" - exit: To terminate the CLI");
+        out().println(" - help: Displays this help message");
+        out().println(" - ls -l: long listing with permissions, size and modification time");
+        out().println(" - cache stats, cache clear: directory listing cache");
+        out().println(" - wc [-l] [-w] [-c]: count lines, words and bytes, cmd1 | cmd2 streams cmd1 into cmd2");
+        out().println(" - rm -r [--parallel=N] dir: remove a directory tree, rmdir -p a/b/c: remove c, then b and a if empty");
+        out().println(" - rm --async: move to the trash and delete in the background, trash status: what is left");
+        out().println(" - find [dir] [-name glob] [-type f|d] [-size [+-]N[ckMG]]: search a tree");
+        out().println(" - grep [-r] [-c] [-n] pattern [file ...]: print the lines that contain the pattern");
+        out().println(" - cp [-r] source... target: copy files and directories");
+        out().println(" - mkdir --batch, touch --batch [name ...]: create many paths at once (names from the input if none)");
+        out().println(" - stats [reset | dump file]: latency percentiles, errors, bytes and entries of every command");
+        out().println(" - export NAME=value, env: variables of the session");
+        out().println(" - cmd &: run in the background, jobs: list them, wait [n ...] / fg [n]: wait and show the output");
+        out().println(" - cat [--raw] [--flush=MS] > file: write the input to the file as it comes, until 'stop' or its end");
+        out().println(" - history [count | -c | -s text [n]], !!, !n, !-n, !text, !?text: lines typed before, kept across runs");
     }
 
     // Execute a system command using ProcessBuilder
     public void errorHandler(String command) {
-        System.out.println("Error executing command: " + command + " not valid");
+        reportError("Error executing command: " + command + " not valid");
+    }
+
+    // message for a command that could not do its work, also marks the command as failed.
+    // One write, so the line stays whole when several threads report at the same time
+    public void reportError(String message) {
+        session.markFailed();
+        out().print(message + System.lineSeparator());
+    }
+
+    // the end of an error message for a file that could not be read or written
+    private static String reason(IOException e) {
+        return e instanceof NoSuchFileException ? "No such file or directory"
+                : e instanceof AccessDeniedException ? "Permission denied"
+                : e instanceof FileAlreadyExistsException ? "File exists" : e.getMessage();
+    }
+
+    // whether a command reported an error since the last call, and start over
+    public boolean takeFailure() {
+        return session.takeFailure();
     }
 
     // Change directory (cd)
     public void changeDirectory(List<String> commandTokens) {
         //cd + nothing
         if (commandTokens.size() <= 1) {
-            System.out.println("cd: missing argument");
+            reportError("cd: missing argument");
             return;
         }
         // join tokens from index 1 to the end, and put if there is spaces
@@ -45,129 +161,100 @@ public class CommandLineInterpreter {
 
         //go back one step
         if (path.equals("..")) {
-            newDirectory = currentDirectory.getParentFile(); // Move up a directory
+            newDirectory = currentDirectory().getParentFile(); // Move up a directory
         } else {
-            newDirectory = new File(currentDirectory, path); // Navigate to specified directory
+            newDirectory = new File(currentDirectory(), path); // Navigate to specified directory
         }
 
         //must be valid directory and not a file
         if (newDirectory != null && newDirectory.exists() && newDirectory.isDirectory()) {
-            currentDirectory = newDirectory.getAbsoluteFile();
+            session.setCurrentDirectory(newDirectory.getAbsoluteFile());
         } else {
-            System.out.println("cd: No such directory: " + path);
+            reportError("cd: No such directory: " + path);
         }
     }
 
     // Print the current working directory (pwd)
     public void printWorkingDirectory() {
-        System.out.println(currentDirectory.getAbsolutePath());
+        out().println(currentDirectory().getAbsolutePath());
     }
 
-    //  Lists the contents (files & directories) of the current directory sorted alphabetically
+    //  Lists the contents (files & directories) of the current directory
     //except . starters (ls)
     public void printListFiles(List<String> commandTokens) throws IOException {
-        files = currentDirectory.listFiles();
-        StringBuilder list = new StringBuilder();
-        int count = 1;
-        if (files != null) {
-            for (File file : files) {
-                // this condition to avoid hiddenFiles
-                if (file.isHidden())
-                    continue;
-                if (file.isDirectory())
-                    list.append(count).append("- /").append(file.getName()).append("/, ");
-                else
-                    list.append(count).append("-").append(file.getName()).append(", ");
-                count++;
-            }
-        }
-        //case of ls >
-        if (commandTokens.size() == 3 && Objects.equals(commandTokens.get(1), ">")) {
-            //for >
-            String toSend = list.toString();
-            greaterThan(toSend, commandTokens.get(2));
-            return;
-        }
-        //case of ls >>
-        else if (commandTokens.size() == 3 && Objects.equals(commandTokens.get(1), ">>")) {
-            //for >
-            String toSend = list.toString();
-            greaterThanThan(toSend, commandTokens.get(2));
-            return;
-        }
-        System.out.println(list);
+        listFiles(commandTokens, 1, new DirectoryLister(false, false));
     }
 
     //List but reversed (ls -r)
     public void printRevListFiles(List<String> commandTokens) throws IOException {
-        files = currentDirectory.listFiles();
-        StringBuilder list = new StringBuilder();
-        int count = 1;
-        if (files != null) {
-            for (int i = files.length - 1; i >= 0; i--) {
-                // this condition to avoid hiddenFiles
-                if (files[i].isHidden())
-                    continue;
-                if (files[i].isDirectory())
-                    list.append(count).append("- /").append(files[i].getName()).append("/, ");
-                else
-                    list.append(count).append("-").append(files[i].getName()).append(", ");
-                count++;
-
-            }
-        }
-
-        //case of ls >
-        if (commandTokens.size() == 4 && Objects.equals(commandTokens.get(2), ">")) {
-            //for >
-            String toSend = list.toString();
-            greaterThan(toSend, commandTokens.get(3));
-            return;
-        }
-        //case of ls >>
-        else if (commandTokens.size() == 4 && Objects.equals(commandTokens.get(2), ">>")) {
-            //for >
-            String toSend = list.toString();
-            greaterThanThan(toSend, commandTokens.get(3));
-            return;
-        }
-        System.out.println(list.toString());
+        listFiles(commandTokens, 2, new DirectoryLister(false, true));
     }
 
     //  Lists all contents including . starter (ls -a)
     public void printAllListFiles(List<String> commandTokens) throws IOException {
-        files = currentDirectory.listFiles();
-        StringBuilder list = new StringBuilder();
-        int count = 1;
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory())
-                    list.append(count).append("- /").append(file.getName()).append("/, ");
-                else
-                    list.append(count).append("-").append(file.getName()).append(", ");
-                count++;
+        listFiles(commandTokens, 2, new DirectoryLister(true, false));
+    }
+
+    //  Long listing with permissions, size and modification time (ls -l)
+    public void printLongListFiles(List<String> commandTokens) throws IOException {
+        listFiles(commandTokens, 2, new DirectoryLister(false, false, true));
+    }
+
+    // ls with any combination of -a, -r and -l, a redirection may follow the options
+    public void printListFiles(List<String> commandTokens, boolean showHidden, boolean reversed, boolean longFormat) throws IOException {
+        int redirectIndex = 1;
+        while (redirectIndex < commandTokens.size() && commandTokens.get(redirectIndex).startsWith("-"))
+            redirectIndex++;
+        listFiles(commandTokens, redirectIndex, new DirectoryLister(showHidden, reversed, longFormat));
+    }
+
+    // the same for a parsed command, the redirection (null for the console) comes from the parser and not from the words
+    public void printListFiles(boolean showHidden, boolean reversed, boolean longFormat, SimpleCommand.Redirect redirect) throws IOException {
+        listFiles(redirect, new DirectoryLister(showHidden, reversed, longFormat));
+    }
+
+    // shared by the ls variants called with tokens, redirectIndex is where > or >> is expected in them
+    private void listFiles(List<String> commandTokens, int redirectIndex, DirectoryLister lister) throws IOException {
+        String operator = commandTokens.size() == redirectIndex + 2 ? commandTokens.get(redirectIndex) : null;
+        //case of ls > and ls >>
+        if (Objects.equals(operator, ">") || Objects.equals(operator, ">>"))
+            listFiles(new SimpleCommand.Redirect(commandTokens.get(redirectIndex + 1), operator.equals(">>")), lister);
+        else
+            listFiles(null, lister);
+    }
+
+    private void listFiles(SimpleCommand.Redirect redirect, DirectoryLister lister) throws IOException {
+        if (redirect != null) {
+            String filename = redirect.target();
+            changed(filename + ".txt");
+            // the listing is encoded into the file chunk by chunk while the directory is read
+            try {
+                Redirection.write(Redirection.target(currentDirectory(), filename), redirect.append(),
+                        target -> session.countEntries(lister.list(currentDirectory().toPath(), target, directoryCache)));
+            } catch (IOException e) {
+                reportError("ls: cannot write " + filename + ".txt: " + reason(e));
             }
-        }
-        //case of ls >
-        if (commandTokens.size() == 4 && Objects.equals(commandTokens.get(2), ">")) {
-            //for >
-            String toSend = list.toString();
-            greaterThan(toSend, commandTokens.get(3));
-            return;
-        }
-        //case of ls >>
-        else if (commandTokens.size() == 4 && Objects.equals(commandTokens.get(2), ">>")) {
-            //for >
-            String toSend = list.toString();
-            greaterThanThan(toSend, commandTokens.get(3));
             return;
         }
-        System.out.println(list.toString());
+        // entries reach the console chunk by chunk instead of once the whole directory is read
+        Writer console = out().asWriter();
+        session.countEntries(lister.list(currentDirectory().toPath(), console, directoryCache));
+        // the long format already ends every entry with its own line
+        if (!lister.isLongFormat())
+            console.write(System.lineSeparator());
+        console.flush();
     }
 
-    //makeDir (mkdir)
+    //makeDir (mkdir), parents are always created so -p changes nothing, --batch prints one summary
     public void mkdir(List<String> commandTokens) {
-        for (int i = 1; i < commandTokens.size(); i++) {
+        int first = 1;
+        while (first < commandTokens.size() && commandTokens.get(first).equals("-p"))
+            first++;
+        if (first < commandTokens.size() && commandTokens.get(first).equals("--batch")) {
+            createBatch("mkdir", commandTokens.subList(first + 1, commandTokens.size()), true);
+            return;
+        }
+        for (int i = first; i < commandTokens.size(); i++) {
             String input = commandTokens.get(i);
 
             // Address of current Directory that we will put newDir in
@@ -182,22 +269,27 @@ public class CommandLineInterpreter {
             File directory = new File(DirectoryName_path);
 
             //create directory with given path
+            changed(input);
             if (directory.mkdirs())
-                System.out.println("Directory Created Successfully! at : " + DirectoryName_path);
+                out().println("Directory Created Successfully! at : " + DirectoryName_path);
             else
-                System.out.println("Failed to create Directory ");
+                reportError("Failed to create Directory ");
         }
     }
 
-    //create file (touch)
+    //create file (touch), --batch prints one summary
     public void touch(List<String> commandTokens) throws IOException {
+        if (commandTokens.size() > 1 && commandTokens.get(1).equals("--batch")) {
+            createBatch("touch", commandTokens.subList(2, commandTokens.size()), false);
+            return;
+        }
         for (int i = 1; i < commandTokens.size(); i++) {
             //input after touch
             StringBuilder input = new StringBuilder(commandTokens.get(i));
             String inputFile = input.toString();
 
             //Address of current Directory that we will put newFile in
-            String path = currentDirectory.getAbsolutePath();
+            String path = currentDirectory().getAbsolutePath();
 
             //Handling if file inside dir !
             String finder = "/";
@@ -224,259 +316,853 @@ public class CommandLineInterpreter {
 
             File file = new File(FileName_path);
 
+            changed(commandTokens.get(i));
             if (file.createNewFile())
-                System.out.println("File Created Successfully! at : " + FileName_path);
+                out().println("File Created Successfully! at : " + FileName_path);
             else
-                System.out.println("Failed to create File");
+                reportError("Failed to create File");
 
 
         }
     }
 
-    //removeDir (rmdir)
-    public void rmdir(List<String> commandTokens) {
+    // mkdir --batch / touch --batch: every name in parallel, the names come from the input when none is given
+    private void createBatch(String command, List<String> names, boolean directories) {
+        if (names.isEmpty()) {
+            names = new ArrayList<>();
+            BufferedReader lines = new BufferedReader(new InputStreamReader(in()));
+            try {
+                for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                    if (!line.isBlank())
+                        names.add(line.strip());
+                }
+            } catch (IOException e) {
+                reportError(command + ": cannot read the names: " + e.getMessage());
+                return;
+            }
+        }
+        BatchCreator creator = new BatchCreator(currentDirectory().toPath());
+        BatchCreator.Result result = directories ? creator.createDirectories(names) : creator.createFiles(names);
+        for (String name : names)
+            changed(name);
+        out().println(command + ": created " + result.created() + (directories ? " directories" : " files")
+                + " (" + result.existing() + " already existed, " + result.parentDirectories() + " parent directories) in "
+                + result.nanos() / 1_000_000 + " ms, " + result.failures() + " failures");
+        for (String failure : result.failureMessages())
+            reportError(command + ": cannot create " + failure);
+        if (result.failures() > result.failureMessages().size())
+            reportError(command + ": " + (result.failures() - result.failureMessages().size()) + " more failures");
+    }
 
-        if (commandTokens.size() <= 1) {
-            System.out.println("rmdir: missing argument");
+    //removeDir (rmdir), -p also removes the parents named in the path once they are empty
+    public void rmdir(List<String> commandTokens) {
+        boolean parents = false;
+        int first = 1;
+        while (first < commandTokens.size() && commandTokens.get(first).equals("-p")) {
+            parents = true;
+            first++;
+        }
+        if (commandTokens.size() <= first) {
+            reportError("rmdir: missing argument");
             return;
         }
-        for (int i = 1; i < commandTokens.size(); i++) {
+        for (int i = first; i < commandTokens.size(); i++) {
             String dir = commandTokens.get(i);
-            File directoryToBeDeleted = new File(currentDirectory, dir);
-
-            if (directoryToBeDeleted != null && directoryToBeDeleted.exists() && directoryToBeDeleted.isDirectory()) {
-                boolean deletionProcess = directoryToBeDeleted.delete();
-                if (deletionProcess) {
-                    System.out.println("Directory Deleted Succesfully!");
-                } else
-                    System.out.println("Failed to Delete Directory (The files isn't Empty)");
-            } else {
-                System.out.println("cd: No such directory: " + dir);
+            File directoryToBeDeleted = new File(currentDirectory(), dir);
+            changed(dir);
+
+            if (!directoryToBeDeleted.isDirectory()) {
+                reportError("rmdir: No such directory: " + dir);
+                continue;
             }
-            if (directoryToBeDeleted.exists() && directoryToBeDeleted.isDirectory()) {
-                boolean deletionProcess = directoryToBeDeleted.delete();
-                if (deletionProcess) {
-                    System.out.println("Directory Deleted Successfully!");
-                } else
-                    System.out.println("Failed to Delete Directory (The files isn't Empty)");
-            } else {
-                System.out.println("No such directory: " + dir);
+            if (!removeEmptyDirectory(directoryToBeDeleted))
+                continue;
+            if (parents) {
+                // a/b/c -> a/b then a, stops at the first one that is not empty
+                Path parent = Paths.get(dir).normalize().getParent();
+                while (parent != null && removeEmptyDirectory(new File(currentDirectory(), parent.toString())))
+                    parent = parent.getParent();
             }
         }
+    }
 
+    private boolean removeEmptyDirectory(File directory) {
+        if (directory.delete()) {
+            out().println("Directory Deleted Successfully!");
+            return true;
+        }
+        reportError("Failed to Delete Directory (The files isn't Empty)");
+        return false;
     }
 
     //move file or directory (mv)
     public void mv(List<String> commandTokens) {
         if (commandTokens.size() < 3) {
-            System.out.println("Error, Expected at least 2 arguments.\n");
+            reportError("Error, Expected at least 2 arguments.\n");
             return;
         }
         if (commandTokens.size() == 3) { // 2 arguments -> rename or move
-            String path = currentDirectory.getAbsolutePath();
+            changed(commandTokens.get(1));
+            changed(commandTokens.get(2));
 
-            String sourcePath = path + File.separator + commandTokens.get(1);
-            String destinationPath = path + File.separator + commandTokens.get(2);
-
-            File sourceFile = new File(sourcePath);
-            File destinationFile = new File(destinationPath);
+            // absolute paths too, a move to another mount point is a copy
+            File sourceFile = resolve(commandTokens.get(1));
+            File destinationFile = resolve(commandTokens.get(2));
 
             if (sourceFile.exists()) {
                 if (destinationFile.isDirectory()) { // move to directory
                     // Create new file object with destination directory + source file name
                     File newFileLocation = new File(destinationFile, sourceFile.getName());
-                    if (sourceFile.renameTo(newFileLocation)) {
-                        System.out.println("File moved to " + newFileLocation.getPath());
+                    if (move(sourceFile, newFileLocation)) {
+                        out().println("File moved to " + newFileLocation.getPath());
                     } else {
-                        System.out.println("Failed to move file.");
+                        reportError("Failed to move file.");
                     }
                 } else { // rename
-                    if (sourceFile.renameTo(destinationFile)) {
-                        System.out.println("File renamed to " + destinationFile.getPath());
+                    if (move(sourceFile, destinationFile)) {
+                        out().println("File renamed to " + destinationFile.getPath());
                     } else {
-                        System.out.println("Failed to rename file.");
+                        reportError("Failed to rename file.");
                     }
                 }
             } else { // Error.
-                System.out.println("Source file does not exist.");
+                reportError("Source file does not exist.");
             }
         } else {
             // more than 2 arguments.
             // Just move all existing files or directories to the last argument if it is a directory.
-            String path = currentDirectory.getAbsolutePath();
-
-            String destinationPath = path + File.separator + commandTokens.getLast();
-            File destinationFile = new File(destinationPath);
+            File destinationFile = resolve(commandTokens.getLast());
 
 
             if (destinationFile.isDirectory()) {
                 for (int i = 1; i < commandTokens.size(); ++i) {
-                    String targetPath = path + File.separator + commandTokens.get(i);
-                    File targetFile = new File(targetPath);
+                    File targetFile = resolve(commandTokens.get(i));
                     if (!targetFile.exists()) {
-                        System.out.println("mv: Target file does not exist: " + commandTokens.get(i));
+                        reportError("mv: Target file does not exist: " + commandTokens.get(i));
                         return;
                     }
                 }
 
+                for (int i = 1; i < commandTokens.size(); ++i)
+                    changed(commandTokens.get(i));
                 for (int i = 1; i < commandTokens.size() - 1; ++i) {
-                    String sourcePath = path + File.separator + commandTokens.get(i);
-                    File sourceFile = new File(sourcePath);
+                    File sourceFile = resolve(commandTokens.get(i));
                     File newFileLocation = new File(destinationFile, sourceFile.getName());
-                    sourceFile.renameTo(newFileLocation);
+                    if (!move(sourceFile, newFileLocation))
+                        reportError("mv: cannot move " + commandTokens.get(i) + " to " + commandTokens.getLast());
                 }
             } else {
-                System.out.println("Destination Directory does not exist.\n");
+                reportError("Destination Directory does not exist.\n");
             }
         }
     }
 
 
+    // rename, or copy and delete when the rename is not possible (e.g. to another file system): the copy keeps
+    // the permissions and times, like the rename does. An existing target is never replaced, by the rename or
+    // by the copy, on any platform
+    private boolean move(File source, File target) {
+        if (target.exists())
+            return false;
+        if (source.renameTo(target))
+            return true;
+        if (!source.exists() || target.exists())
+            return false;
+        FileCopier.Result result;
+        try {
+            result = new FileCopier().copy(source.toPath(), target.toPath(), true, true);
+        } catch (IOException e) {
+            reportError("mv: cannot copy " + source.getName() + ": " + e.getMessage());
+            // no half copied target left behind
+            if (Files.isDirectory(target.toPath(), LinkOption.NOFOLLOW_LINKS))
+                new TreeDeleter(1).delete(target.toPath());
+            else
+                target.delete();
+            return false;
+        }
+        boolean deleted = Files.isDirectory(source.toPath(), LinkOption.NOFOLLOW_LINKS)
+                ? new TreeDeleter(1).delete(source.toPath()).failures() == 0 : source.delete();
+        if (!deleted)
+            reportError("mv: copied " + source.getName() + " but could not remove it");
+        out().println("mv: copied " + result.summary());
+        return deleted;
+    }
+
+    //copy files and directories (cp [-r] source... target)
+    public void cp(List<String> commandTokens) {
+        boolean recursive = false;
+        int first = 1;
+        while (first < commandTokens.size() && (commandTokens.get(first).equals("-r") || commandTokens.get(first).equals("-R"))) {
+            recursive = true;
+            first++;
+        }
+        if (commandTokens.size() - first < 2) {
+            reportError("Usage: cp [-r] source... target");
+            return;
+        }
+        String targetName = commandTokens.getLast();
+        File target = resolve(targetName);
+        boolean intoDirectory = target.isDirectory();
+        if (commandTokens.size() - first > 2 && !intoDirectory) {
+            reportError("cp: target '" + targetName + "' is not a directory");
+            return;
+        }
+        FileCopier copier = new FileCopier();
+        long files = 0, bytes = 0, nanos = 0;
+        for (int i = first; i < commandTokens.size() - 1; i++) {
+            String sourceName = commandTokens.get(i);
+            File source = resolve(sourceName);
+            if (!source.exists()) {
+                reportError("cp: cannot stat '" + sourceName + "': No such file or directory");
+                continue;
+            }
+            if (source.isDirectory() && !recursive) {
+                reportError("cp: -r not specified; omitting directory '" + sourceName + "'");
+                continue;
+            }
+            File destination = intoDirectory ? new File(target, source.getName()) : target;
+            changed(intoDirectory ? targetName + File.separator + source.getName() : targetName);
+            try {
+                if (FileCopier.isSameFile(source.toPath(), destination.toPath())) {
+                    reportError("cp: " + FileCopier.sameFileMessage(source.toPath(), destination.toPath()));
+                    continue;
+                }
+                FileCopier.Result result = copier.copy(source.toPath(), destination.toPath(), recursive);
+                files += result.files();
+                bytes += result.bytes();
+                session.countRead(result.bytes());
+                nanos += result.nanos();
+            } catch (IOException e) {
+                reportError("cp: cannot copy '" + sourceName + "': " + e.getMessage());
+            }
+        }
+        if (files > 0)
+            out().println("cp: copied " + new FileCopier.Result(files, bytes, nanos).summary());
+    }
+
+    //remove files (rm), -r removes directories with everything in them, --parallel=N sets the number of threads,
+    //--async moves the targets to the trash and returns, they are deleted in the background
     public void rm(List<String> commandTokens) {
-        if (commandTokens.size() < 2) {
-            System.out.println("Invalid command syntax. Usage: rm <fileName>");
+        boolean recursive = false;
+        boolean async = false;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int first = 1;
+        for (; first < commandTokens.size(); first++) {
+            String option = commandTokens.get(first);
+            if (option.equals("-r") || option.equals("-R")) {
+                recursive = true;
+            } else if (option.equals("--async")) {
+                async = true;
+            } else if (option.startsWith("--parallel=")) {
+                try {
+                    parallelism = Integer.parseInt(option.substring("--parallel=".length()));
+                } catch (NumberFormatException e) {
+                    parallelism = 0;
+                }
+                if (parallelism < 1) {
+                    reportError("rm: invalid parallelism: " + option.substring("--parallel=".length()));
+                    return;
+                }
+            } else {
+                break;
+            }
+        }
+        if (commandTokens.size() <= first) {
+            reportError("Invalid command syntax. Usage: rm <fileName>");
             return;
         }
-        String path = currentDirectory.getAbsolutePath();
-        for (int i = 1; i < commandTokens.size(); ++i) {
+        String path = currentDirectory().getAbsolutePath();
+        for (int i = first; i < commandTokens.size(); ++i) {
             String targetPath = path + File.separator + commandTokens.get(i);
             File targetFile = new File(targetPath);
-            if (targetFile.isDirectory()) {
-                System.out.println("rm: cannot remove " + commandTokens.get(i) + " : Is a " + "directory");
+            if (targetFile.isDirectory() && !recursive) {
+                reportError("rm: cannot remove " + commandTokens.get(i) + " : Is a " + "directory");
                 return;
             }
             if (!targetFile.exists()) {
-                System.out.println("rm: Target file does not exist: " + commandTokens.get(i));
+                reportError("rm: Target file does not exist: " + commandTokens.get(i));
                 return;
             }
         }
-        for (int i = 1; i < commandTokens.size(); ++i) {
+        for (int i = first; i < commandTokens.size(); ++i) {
             String targetPath = path + File.separator + commandTokens.get(i);
-            ;
             File targetFile = new File(targetPath);
-            targetFile.delete();
+            changed(commandTokens.get(i));
+            if (async && moveToTrash(commandTokens.get(i), targetFile.toPath()))
+                continue;
+            // a link to a directory is removed like a file, what it points to stays
+            if (recursive && Files.isDirectory(targetFile.toPath(), LinkOption.NOFOLLOW_LINKS))
+                removeTree(commandTokens.get(i), targetFile.toPath(), parallelism);
+            else
+                targetFile.delete();
+        }
+    }
+
+    // false when the file system cannot rename it into the trash, it has to be deleted right away
+    private boolean moveToTrash(String name, Path target) {
+        try {
+            trash.moveToTrash(target);
+        } catch (AtomicMoveNotSupportedException e) {
+            return false;
+        } catch (IOException e) {
+            reportError("rm: cannot move " + name + " to the trash: " + e.getMessage());
+        }
+        return true;
+    }
+
+    //trash status
+    public void trash(List<String> commandTokens) {
+        if (commandTokens.size() == 2 && commandTokens.get(1).equals("status"))
+            out().println(trash.status());
+        else
+            reportError("Usage: trash status");
+    }
+
+    private void removeTree(String name, Path directory, int parallelism) {
+        TreeDeleter.Result result = new TreeDeleter(parallelism).delete(directory);
+        session.countEntries(result.entries());
+        out().println("rm: removed " + result.files() + " files and " + result.directories() + " directories from " + name
+                + " in " + result.nanos() / 1_000_000 + " ms (" + result.entriesPerSecond(result.entries()) + " entries/s, "
+                + parallelism + " threads)");
+        for (Map.Entry<String, TreeDeleter.WorkerStats> worker : result.workers().entrySet()) {
+            TreeDeleter.WorkerStats stats = worker.getValue();
+            out().println("  " + worker.getKey() + ": " + stats.getEntries() + " entries ("
+                    + result.entriesPerSecond(stats.getEntries()) + " entries/s), " + stats.getFailures() + " failures");
+        }
+        for (String failure : result.failureMessages())
+            reportError("rm: cannot remove " + failure);
+        if (result.failures() > result.failureMessages().size())
+            reportError("rm: " + (result.failures() - result.failureMessages().size()) + " more failures");
+    }
+
+    //variables of the session (export NAME=value ...)
+    public void export(List<String> commandTokens) {
+        if (commandTokens.size() == 1) {
+            env();
+            return;
+        }
+        for (String assignment : commandTokens.subList(1, commandTokens.size())) {
+            int equals = assignment.indexOf('=');
+            if (equals <= 0) {
+                reportError("export: '" + assignment + "': not a valid assignment");
+                continue;
+            }
+            session.setVariable(assignment.substring(0, equals), assignment.substring(equals + 1));
+        }
+    }
+
+    //print the variables of the session (env)
+    public void env() {
+        for (Map.Entry<String, String> variable : session.getEnvironment().entrySet())
+            out().println(variable.getKey() + "=" + variable.getValue());
+    }
+
+    //what the commands cost so far (stats, stats reset, stats dump file)
+    public void stats(List<String> commandTokens, CommandStats stats) throws IOException {
+        if (commandTokens.size() == 1) {
+            Writer writer = out().asWriter();
+            stats.print(writer);
+            writer.flush();
+        } else if (commandTokens.size() == 2 && commandTokens.get(1).equals("reset")) {
+            stats.reset();
+        } else if (commandTokens.size() == 3 && commandTokens.get(1).equals("dump")) {
+            changed(commandTokens.get(2) + ".txt");
+            stats.dump(Redirection.target(currentDirectory(), commandTokens.get(2)));
+        } else {
+            reportError("Usage: stats [reset | dump file]");
+        }
+    }
+
+    //lines typed before (history [count], history -c, history -s text [n]).
+    //-s shows the newest line containing text, before line n when given: with the number it printed, the next
+    //history -s goes further back, a reverse search one step at a time
+    public void history(List<String> commandTokens) {
+        CommandHistory history = session.getHistory();
+        if (history == null) {
+            reportError("history: no history in this session");
+            return;
+        }
+        try {
+            if (commandTokens.size() == 1) {
+                for (String line : history.tail(-1))
+                    out().println(line);
+            } else if (commandTokens.size() == 2 && commandTokens.get(1).equals("-c")) {
+                history.clear();
+            } else if (commandTokens.size() == 2) {
+                for (String line : history.tail(Integer.parseInt(commandTokens.get(1))))
+                    out().println(line);
+            } else if (commandTokens.get(1).equals("-s") && commandTokens.size() <= 4) {
+                // the newest line is this history -s itself
+                int before = commandTokens.size() == 4 ? Integer.parseInt(commandTokens.get(3)) : history.size();
+                int found = history.search(commandTokens.get(2), before);
+                if (found == 0)
+                    reportError("history: " + commandTokens.get(2) + ": not found");
+                else
+                    out().println(String.format("%5d  %s", found, history.get(found)));
+            } else {
+                reportError("Usage: history [count | -c | -s text [n]]");
+            }
+        } catch (NumberFormatException e) {
+            reportError("Usage: history [count | -c | -s text [n]]");
+        }
+    }
+
+    //background jobs (jobs)
+    public void listJobs() {
+        session.getJobs().printJobs(out());
+    }
+
+    //wait for background jobs (wait [n ...]), their output is shown once they are done
+    public void waitJobs(List<String> commandTokens) {
+        // a job waiting for a job that waits for it would never end, jobs do not wait for each other
+        if (session.isBackground()) {
+            reportError("wait: not allowed in a background job");
+            return;
+        }
+        try {
+            session.getJobs().waitFor(this, commandTokens.subList(1, commandTokens.size()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reportError("wait: interrupted");
+        }
+    }
+
+    //bring a background job back (fg [n]): wait for it and show its output
+    public void fg(List<String> commandTokens) {
+        if (commandTokens.size() > 2) {
+            reportError("Usage: fg [n]");
+            return;
+        }
+        if (session.isBackground()) {
+            reportError("fg: not allowed in a background job");
+            return;
+        }
+        try {
+            session.getJobs().foreground(this, commandTokens.size() == 2 ? commandTokens.get(1) : null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reportError("fg: interrupted");
         }
     }
 
     //cat concatenate (cat)
     public void cat(List<String> commandTokens) throws IOException {
-        //filename
-        StringBuilder input = new StringBuilder();
-        //path of file before adding name
-        input.append(getCurrentDirectory().getAbsolutePath());
+        // cat [--raw] [--flush=MS] > file, the redirection after the options
+        int redirectIndex = 1;
+        while (redirectIndex < commandTokens.size() && commandTokens.get(redirectIndex).startsWith("--"))
+            redirectIndex++;
+        String operator = redirectIndex + 1 < commandTokens.size() ? commandTokens.get(redirectIndex) : null;
+        if (Objects.equals(operator, ">") || Objects.equals(operator, ">>"))
+            cat(commandTokens.subList(0, redirectIndex),
+                    new SimpleCommand.Redirect(commandTokens.get(redirectIndex + 1), operator.equals(">>")));
+        else
+            cat(commandTokens, null);
+    }
 
+    // the same for a parsed command, the redirection (null when there is none) comes from the parser
+    public void cat(List<String> commandTokens, SimpleCommand.Redirect redirect) throws IOException {
+        // cat alone reading a pipe, bytes go through as they are until the previous command is done.
+        // They were counted as read by the command that read the file, not once more here
+        if (commandTokens.size() == 1 && redirect == null && session.hasRedirectedInput()) {
+            in().transferTo(out().asStream());
+        }
         // case of cat  alone
-        if (commandTokens.size() == 1) {
-            Scanner reader = new Scanner(System.in);
-            System.out.println("Enter text (type 'stop' to finish):");
+        else if (commandTokens.size() == 1 && redirect == null) {
+            Scanner reader = new Scanner(in());
+            out().println("Enter text (type 'stop' to finish):");
             // Read input until "stop" is typed
             while (true) {
+                // the user has to see what was typed so far before the next line is read
+                out().flush();
                 String line = reader.nextLine();
                 if (line.equals("stop")) {
                     break;
                 }
-                System.out.println(line);
+                out().println(line);
             }
-        } else {
-            //Here cat > filename or cat >>filename
-            String option = commandTokens.get(1);
-            // Handle cat > file , cat >> file case
-            if (Objects.equals(option, ">") || Objects.equals(option, ">>")) {
-                String filename = commandTokens.get(2);
-                StringBuilder userInput = new StringBuilder();   // StringBuilder for user input
-
-                // user input until "stop"
-                Scanner reader = new Scanner(System.in);
-                System.out.println("Enter text (type 'stop' to finish):");
-                while (true) {
-                    String line = reader.nextLine();
-                    if (line.equals("stop")) {
-                        break;
+        } else if (redirect != null) {
+            //Here cat > filename or cat >>filename, the input is written to the file while it is read
+            boolean raw = false;
+            InputCapture capture = InputCapture.getDefault();
+            for (String option : commandTokens.subList(1, commandTokens.size())) {
+                if (option.equals("--raw")) {
+                    raw = true;
+                } else if (option.startsWith("--flush=")) {
+                    try {
+                        capture = new InputCapture(Long.parseLong(option.substring("--flush=".length())));
+                    } catch (NumberFormatException e) {
+                        reportError("cat: invalid flush interval: " + option.substring("--flush=".length()));
+                        return;
                     }
-                    //system line seperator is "\n"
-                    userInput.append(line).append(System.lineSeparator());
+                } else {
+                    reportError("Usage: cat [--raw] [--flush=MS] > file");
+                    return;
                 }
-
-                // Redirect to either `greaterThan` or `greaterThanThan` based on the option
-                String content = userInput.toString();
-                if (option.equals(">")) {
-                    greaterThan(content, filename);
-                } else if (option.equals(">>")) {
-                    greaterThanThan(content, filename);
+            }
+            String filename = redirect.target();
+            changed(filename + ".txt");
+            Path target = Redirection.target(currentDirectory(), filename);
+            try {
+                if (raw) {
+                    // no prompt, the input may be anything up to its end
+                    capture.captureRaw(in(), target, redirect.append());
+                } else {
+                    // user input until "stop"
+                    out().println("Enter text (type 'stop' to finish):");
+                    out().flush();
+                    capture.captureLines(in(), target, redirect.append());
                 }
+            } catch (IOException e) {
+                reportError("cat: cannot write " + filename + ".txt: " + reason(e));
             }
-            // `cat filename`
-            else {
-                input.append(File.separator).append(option).append(".txt");
-                //convert the path+file name to string
-                String filename = input.toString();
-                // pass the path with name to file
-                File fileToRead = new File(filename);
-
+        } else if (commandTokens.get(1).startsWith("--")) {
+            reportError("Usage: cat [--raw] [--flush=MS] > file");
+        }
+        // `cat filename ...`
+        else {
+            List<File> filesToRead = new ArrayList<>();
+            for (int i = 1; i < commandTokens.size(); i++) {
+                File fileToRead = resolveReadableFile(commandTokens.get(i));
                 // Check if the file exists and is readable
-                if (!fileToRead.exists() || !fileToRead.canRead()) {
-                    System.out.println("File not found or cannot be read.");
+                if (fileToRead == null) {
+                    reportError("File not found or cannot be read.");
                     return;
                 }
-                //Scan file content
-                Scanner readContent = new Scanner(fileToRead);
-                while (readContent.hasNextLine()) {
-                    String line = readContent.nextLine();
-                    System.out.println(line);
+                filesToRead.add(fileToRead);
+            }
+            streamFiles(filesToRead);
+        }
+    }
+
+    // name as given, or with the .txt extension that the redirections append
+    private File resolveReadableFile(String name) {
+        File exact = new File(currentDirectory(), name);
+        if (exact.isFile() && exact.canRead())
+            return exact;
+        File withExtension = new File(currentDirectory(), name + ".txt");
+        if (withExtension.isFile() && withExtension.canRead())
+            return withExtension;
+        return null;
+    }
+
+    // copy the raw bytes of every file to the output one after another, nothing is decoded into lines
+    // so memory stays flat whatever the file size
+    private void streamFiles(List<File> filesToRead) throws IOException {
+        for (File fileToRead : filesToRead) {
+            CommandEvents.FileReadEvent event = new CommandEvents.FileReadEvent();
+            event.begin();
+            long read = 0;
+            try (FileChannel source = FileChannel.open(fileToRead.toPath(), StandardOpenOption.READ)) {
+                long size = source.size();
+                for (long position = 0; position < size; position += TRANSFER_CHUNK) {
+                    out().transferFrom(source, position, Math.min(TRANSFER_CHUNK, size - position));
+                    read += Math.min(TRANSFER_CHUNK, size - position);
+                    // the reading end of a pipe went away, nobody wants the rest
+                    if (out().checkError())
+                        break;
                 }
-                readContent.close();
+            } finally {
+                session.countRead(read);
+                fileRead(event, fileToRead.toPath(), read);
             }
+            if (out().hasError())
+                return;
         }
     }
 
+    //find [dir] [-name glob] [-type f|d] [-size [+-]N[ckMG]], every match is printed as soon as it is found
+    public void find(List<String> commandTokens) {
+        String start = ".";
+        int i = 1;
+        if (i < commandTokens.size() && !commandTokens.get(i).startsWith("-"))
+            start = commandTokens.get(i++);
+        String name = null;
+        char type = 0;
+        LongPredicate size = null;
+        for (; i < commandTokens.size(); i += 2) {
+            String option = commandTokens.get(i);
+            if (i + 1 >= commandTokens.size()) {
+                reportError("find: missing argument to '" + option + "'");
+                return;
+            }
+            String value = commandTokens.get(i + 1);
+            if (option.equals("-name")) {
+                name = value;
+            } else if (option.equals("-type") && (value.equals("f") || value.equals("d"))) {
+                type = value.charAt(0);
+            } else if (option.equals("-size")) {
+                try {
+                    size = FileFinder.parseSize(value);
+                } catch (IllegalArgumentException e) {
+                    reportError("find: invalid argument '" + value + "' to '-size'");
+                    return;
+                }
+            } else {
+                reportError("find: unknown predicate '" + option + " " + value + "'");
+                return;
+            }
+        }
 
-    //Redirect output (>)
-    public void greaterThan(String output, String filename) throws IOException {
-        //toSend array is incase of touch if there isn't file so we pass array to create
-        List<String> toSend = new ArrayList<String>();
-        toSend.add(filename);
+        OutputSink sink = out();
+        String separator = System.lineSeparator();
+        FileFinder finder = new FileFinder(name, type, size,
+                Integer.getInteger("cli.find.maxConcurrency", FileFinder.DEFAULT_MAX_CONCURRENCY));
+        FileFinder.Result result = finder.find(currentDirectory().toPath().resolve(start).normalize(), start, new FileFinder.Listener() {
+            @Override
+            public void found(String display) {
+                // one write per line, the walking threads print at the same time
+                sink.print(display + separator);
+            }
+
+            @Override
+            public void failed(String display, IOException e) {
+                reportError("find: '" + display + "': " + reason(e));
+            }
+
+            @Override
+            public boolean stopped() {
+                return sink.hasError();
+            }
+        });
+        session.countEntries(result.entries());
+    }
+
+    //grep [-r] [-c] [-n] pattern [file ...], the input when there is no file, -r searches directories
+    public void grep(List<String> commandTokens) throws IOException {
+        boolean recursive = false, countOnly = false, lineNumbers = false;
+        int i = 1;
+        for (; i < commandTokens.size() && commandTokens.get(i).startsWith("-") && commandTokens.get(i).length() > 1; i++) {
+            String options = commandTokens.get(i);
+            for (int j = 1; j < options.length(); j++) {
+                char option = options.charAt(j);
+                if (option == 'r')
+                    recursive = true;
+                else if (option == 'c')
+                    countOnly = true;
+                else if (option == 'n')
+                    lineNumbers = true;
+                else {
+                    reportError("grep: invalid option -- '" + option + "'");
+                    return;
+                }
+            }
+        }
+        if (i >= commandTokens.size()) {
+            reportError("Usage: grep [-r] [-c] [-n] pattern [file ...]");
+            return;
+        }
+        Grep grep;
+        try {
+            grep = new Grep(commandTokens.get(i++), lineNumbers, countOnly);
+        } catch (PatternSyntaxException e) {
+            reportError("grep: invalid pattern: " + e.getDescription());
+            return;
+        }
+
+        List<String> names = new ArrayList<>(commandTokens.subList(i, commandTokens.size()));
+        if (names.isEmpty() && !recursive) {
+            long count = grep.searchStream(in(), "", out());
+            if (countOnly)
+                out().println(count);
+            return;
+        }
+        if (names.isEmpty())
+            names.add(".");
+
+        // file name -> what to call it in the output
+        List<Path> files = new ArrayList<>();
+        List<String> displays = new ArrayList<>();
+        for (String name : names) {
+            File file = new File(currentDirectory(), name);
+            if (file.isDirectory()) {
+                if (!recursive) {
+                    reportError("grep: " + name + ": Is a directory");
+                    continue;
+                }
+                Path root = file.toPath();
+                // a directory that cannot be read is reported, the rest of the tree is still searched
+                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path found, BasicFileAttributes attributes) {
+                        if (Files.isRegularFile(found)) {
+                            files.add(found);
+                            displays.add(Paths.get(name).resolve(root.relativize(found)).normalize().toString());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path failed, IOException e) {
+                        reportError("grep: " + Paths.get(name).resolve(root.relativize(failed)).normalize() + ": " + reason(e));
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+                continue;
+            }
+            File readable = resolveReadableFile(name);
+            if (readable == null) {
+                reportError("grep: " + name + ": No such file or directory");
+                continue;
+            }
+            files.add(readable.toPath());
+            displays.add(name);
+        }
+
+        boolean showNames = recursive || files.size() > 1;
+        for (int f = 0; f < files.size() && !out().hasError(); f++) {
+            String prefix = showNames ? displays.get(f) + ":" : "";
+            CommandEvents.FileReadEvent event = new CommandEvents.FileReadEvent();
+            event.begin();
+            long count = grep.searchFile(files.get(f), prefix, out());
+            long size = files.get(f).toFile().length();
+            session.countRead(size);
+            fileRead(event, files.get(f), size);
+            if (countOnly)
+                out().println(prefix + count);
+        }
+    }
 
-        //path
-        StringBuilder path = new StringBuilder();
-        path.append(currentDirectory.getAbsolutePath()).append(File.separator).append(filename).append(".txt");
+    //count lines, words and bytes (wc [-l] [-w] [-c] [file ...]), the input when there is no file
+    public void wc(List<String> commandTokens) throws IOException {
+        boolean lines = false, words = false, bytes = false;
+        List<File> filesToCount = new ArrayList<>();
+        for (int i = 1; i < commandTokens.size(); i++) {
+            String token = commandTokens.get(i);
+            // -l, -w, -c, alone or grouped like -lw
+            if (token.matches("-[lwc]+")) {
+                lines |= token.indexOf('l') > 0;
+                words |= token.indexOf('w') > 0;
+                bytes |= token.indexOf('c') > 0;
+            } else {
+                File fileToCount = resolveReadableFile(token);
+                if (fileToCount == null) {
+                    reportError("wc: " + token + ": No such file");
+                    return;
+                }
+                filesToCount.add(fileToCount);
+            }
+        }
+        // no option means all three counts
+        if (!lines && !words && !bytes)
+            lines = words = bytes = true;
 
-        //File checker
-        File file_checker = new File(path.toString());
-        if (!file_checker.exists()) {
-            touch(toSend);
+        if (filesToCount.isEmpty()) {
+            long[] counts = countStream(in());
+            out().println(formatCounts(counts, lines, words, bytes, null));
+            return;
+        }
+        long[] total = new long[3];
+        for (File fileToCount : filesToCount) {
+            long[] counts;
+            CommandEvents.FileReadEvent event = new CommandEvents.FileReadEvent();
+            event.begin();
+            try (InputStream stream = new FileInputStream(fileToCount)) {
+                counts = countStream(stream);
+            }
+            session.countRead(counts[2]);
+            fileRead(event, fileToCount.toPath(), counts[2]);
+            for (int i = 0; i < 3; i++)
+                total[i] += counts[i];
+            out().println(formatCounts(counts, lines, words, bytes, fileToCount.getName()));
+        }
+        if (filesToCount.size() > 1)
+            out().println(formatCounts(total, lines, words, bytes, "total"));
+    }
+
+    // lines, words and bytes of the stream, counted on the raw bytes with a fixed buffer
+    private static long[] countStream(InputStream stream) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long lines = 0, words = 0, bytes = 0;
+        boolean inWord = false;
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            bytes += read;
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                if (b == '\n')
+                    lines++;
+                boolean space = b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+                if (!space && !inWord)
+                    words++;
+                inWord = !space;
+            }
         }
-        //path to file
-        FileWriter file = new FileWriter(path.toString());
-        file.write(output);
-        file.close();
+        return new long[]{lines, words, bytes};
+    }
+
+    private static String formatCounts(long[] counts, boolean lines, boolean words, boolean bytes, String name) {
+        StringBuilder line = new StringBuilder();
+        if (lines)
+            line.append(counts[0]).append(' ');
+        if (words)
+            line.append(counts[1]).append(' ');
+        if (bytes)
+            line.append(counts[2]).append(' ');
+        if (name != null)
+            line.append(name);
+        return line.toString().trim();
+    }
+
+    // output of a whole command going to a file (cmd > file, cmd >> file), see CommandRegistry
+    public OutputSink openRedirection(String filename, boolean append) throws IOException {
+        changed(filename + ".txt");
+        return OutputSink.file(Redirection.target(currentDirectory(), filename), append, OutputSink.FlushPolicy.SIZE);
+    }
 
+    //Redirect output (>)
+    public void greaterThan(String output, String filename) throws IOException {
+        changed(filename + ".txt");
+        Redirection.write(Redirection.target(currentDirectory(), filename), false, output);
     }
 
     //Redirect output (>>)
     public void greaterThanThan(String output, String filename) throws IOException {
-        //toSend array is incase of touch if there isn't file so we pass array to create
-        List<String> toSend = new ArrayList<String>();
-        toSend.add(filename);
+        changed(filename + ".txt");
+        Redirection.write(Redirection.target(currentDirectory(), filename), true, output);
+    }
 
-        //path
-        StringBuilder path = new StringBuilder();
-        path.append(currentDirectory.getAbsolutePath()).append(File.separator).append(filename).append(".txt");
 
-        //File checker
-        File file_checker = new File(path.toString());
-        if (!file_checker.exists()) {
-            touch(toSend);
+    //listing cache (cache stats, cache clear)
+    public void cache(List<String> commandTokens) {
+        String action = commandTokens.size() > 1 ? commandTokens.get(1) : "";
+        if (action.equals("stats")) {
+            out().println(directoryCache.stats());
+        } else if (action.equals("clear")) {
+            directoryCache.clear();
+            out().println("Cache cleared");
+        } else {
+            reportError("Usage: cache stats | cache clear");
         }
-        //path to file  , true is for append
-        FileWriter file = new FileWriter(path.toString(), true);
-        file.write(output);
-        file.close();
+    }
 
+    // drop the cached listings that a change to this path (relative to the current directory) makes stale,
+    // the path itself and every directory it creates or removes on the way
+    private void changed(String relativePath) {
+        Path path = currentDirectory().toPath().resolve(relativePath);
+        int levels = Paths.get(relativePath).getNameCount();
+        for (int i = 0; i <= levels && path != null; i++) {
+            directoryCache.invalidate(path);
+            path = path.getParent();
+        }
     }
 
+    // a name typed by the user, relative to the current directory unless it is absolute
+    private File resolve(String name) {
+        return currentDirectory().toPath().resolve(name).toFile();
+    }
+
+    // ends the Flight Recorder event of a file read by a command
+    private static void fileRead(CommandEvents.FileReadEvent event, Path file, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = file.toString();
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
 
     public File getCurrentDirectory() {
-        return currentDirectory;
+        return currentDirectory();
     }
 
 
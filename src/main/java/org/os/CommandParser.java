@@ -0,0 +1,177 @@
+package org.os;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Single pass lexer and parser for a command line.
+// Words are split on any run of blanks, 'single quotes' keep everything literally, "double quotes" and
+// a backslash outside quotes escape the next character. > >> | & are operators even without blanks
+// around them (ls>out) unless they are quoted.
+// The result is a list of jobs, every job a pipeline of SimpleCommands, e.g.
+//   cat "my file" | wc -l > count &   ->   [Job(cat "my file" | wc -l > count, background)]
+// Parsed lines are immutable and cached, a script repeating the same lines parses each of them once.
+// A parser reuses its buffers, it belongs to one thread
+public class CommandParser {
+
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private enum Kind { WORD, REDIRECT, APPEND, PIPE, BACKGROUND }
+
+    private final int cacheSize;
+    private final Map<String, List<Job>> cache;
+
+    // reused for every word and every token list of every line
+    private final StringBuilder word = new StringBuilder(64);
+    private final List<Kind> kinds = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+
+    public CommandParser() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public CommandParser(int cacheSize) {
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Job>> eldest) {
+                return size() > CommandParser.this.cacheSize;
+            }
+        };
+    }
+
+    // an empty list for a blank line
+    public List<Job> parse(String line) throws ParseException {
+        List<Job> jobs = cache.get(line);
+        if (jobs == null) {
+            jobs = Collections.unmodifiableList(parseJobs(line));
+            if (cacheSize > 0)
+                cache.put(line, jobs);
+        }
+        return jobs;
+    }
+
+    private List<Job> parseJobs(String line) throws ParseException {
+        tokenize(line);
+        List<Job> jobs = new ArrayList<>();
+        List<SimpleCommand> stages = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        String redirectTarget = null;
+        boolean append = false;
+
+        for (int i = 0; i <= kinds.size(); i++) {
+            Kind kind = i < kinds.size() ? kinds.get(i) : null;
+            if (kind == Kind.WORD) {
+                words.add(texts.get(i));
+            } else if (kind == Kind.REDIRECT || kind == Kind.APPEND) {
+                if (i + 1 >= kinds.size() || kinds.get(i + 1) != Kind.WORD)
+                    throw new ParseException("syntax error: missing file after " + texts.get(i), i);
+                if (redirectTarget != null)
+                    throw new ParseException("syntax error: more than one redirection", i);
+                redirectTarget = texts.get(++i);
+                append = kind == Kind.APPEND;
+            } else {
+                // | & or the end of the line close the current command
+                if (words.isEmpty()) {
+                    if (kind == null && stages.isEmpty() && redirectTarget == null)
+                        break;
+                    throw new ParseException("syntax error near " + (kind == null ? "end of line" : texts.get(i)), i);
+                }
+                stages.add(new SimpleCommand(words, redirectTarget, append));
+                words.clear();
+                redirectTarget = null;
+                append = false;
+                if (kind != Kind.PIPE) {
+                    jobs.add(new Job(stages, kind == Kind.BACKGROUND));
+                    stages.clear();
+                    // a line may end right after &
+                    if (kind == Kind.BACKGROUND && i + 1 == kinds.size())
+                        break;
+                }
+            }
+        }
+        return jobs;
+    }
+
+    private void tokenize(String line) throws ParseException {
+        kinds.clear();
+        texts.clear();
+        word.setLength(0);
+        // a quoted empty string is still a word
+        boolean inWord = false;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            switch (c) {
+                case ' ', '\t', '\r', '\n' -> {
+                    inWord = endWord(inWord);
+                }
+                case '\'' -> {
+                    int close = line.indexOf('\'', i + 1);
+                    if (close < 0)
+                        throw new ParseException("unterminated quote", i);
+                    word.append(line, i + 1, close);
+                    inWord = true;
+                    i = close;
+                }
+                case '"' -> {
+                    i++;
+                    while (i < length && line.charAt(i) != '"') {
+                        char quoted = line.charAt(i);
+                        if (quoted == '\\' && i + 1 < length && (line.charAt(i + 1) == '"' || line.charAt(i + 1) == '\\'))
+                            quoted = line.charAt(++i);
+                        word.append(quoted);
+                        i++;
+                    }
+                    if (i >= length)
+                        throw new ParseException("unterminated quote", length);
+                    inWord = true;
+                }
+                case '\\' -> {
+                    if (i + 1 < length)
+                        word.append(line.charAt(++i));
+                    inWord = true;
+                }
+                case '>' -> {
+                    inWord = endWord(inWord);
+                    if (i + 1 < length && line.charAt(i + 1) == '>') {
+                        operator(Kind.APPEND, ">>");
+                        i++;
+                    } else {
+                        operator(Kind.REDIRECT, ">");
+                    }
+                }
+                case '|' -> {
+                    inWord = endWord(inWord);
+                    operator(Kind.PIPE, "|");
+                }
+                case '&' -> {
+                    inWord = endWord(inWord);
+                    operator(Kind.BACKGROUND, "&");
+                }
+                default -> {
+                    word.append(c);
+                    inWord = true;
+                }
+            }
+        }
+        endWord(inWord);
+    }
+
+    private boolean endWord(boolean inWord) {
+        if (inWord) {
+            kinds.add(Kind.WORD);
+            texts.add(word.toString());
+            word.setLength(0);
+        }
+        return false;
+    }
+
+    private void operator(Kind kind, String text) {
+        kinds.add(kind);
+        texts.add(text);
+    }
+}
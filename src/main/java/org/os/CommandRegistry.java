@@ -0,0 +1,292 @@
+package org.os;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Name -> command table used by every front end (the interactive loop, pipelines, scripts and tests),
+// a lookup is one hash access whatever the number of commands.
+// Commands register with the options they accept: short flags like "arl" (-a, -r, -l, also -la)
+// and long ones like "async" (--async) or "parallel=" (--parallel=4, the command reads the value from its tokens).
+// Leading option tokens are parsed before the command runs
+public class CommandRegistry {
+
+    private static final class Registration {
+        private final String name;
+        private final Command command;
+        private final String shortOptions;
+        private final Set<String> longOptions;
+        private final boolean ignoreCase;
+
+        private Registration(String name, Command command, String shortOptions, Set<String> longOptions, boolean ignoreCase) {
+            this.name = name;
+            this.command = command;
+            this.shortOptions = shortOptions;
+            this.longOptions = longOptions;
+            this.ignoreCase = ignoreCase;
+        }
+    }
+
+    private final Map<String, Registration> commands = new HashMap<>();
+
+    // commands that read > file / >> file from their own tokens, for the words they are called with
+    private final Map<String, Predicate<List<String>>> ownRedirection = new HashMap<>();
+
+    //set once the registry is shared between sessions, the maps are only read from then on
+    private volatile boolean frozen;
+
+    //one sample per command run
+    private final CommandStats stats;
+
+    public CommandRegistry() {
+        this(CommandStats.getDefault());
+    }
+
+    public CommandRegistry(CommandStats stats) {
+        this.stats = stats;
+    }
+
+    // registry with all the commands of the CLI
+    public static CommandRegistry standard() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.registerIgnoreCase("help", (cli, invocation) -> cli.displayHelp());
+        registry.register("cd", (cli, invocation) -> cli.changeDirectory(invocation.getTokens()));
+        registry.register("pwd", (cli, invocation) -> cli.printWorkingDirectory());
+        registry.register("ls", "arl", (cli, invocation) -> cli.printListFiles(
+                invocation.hasOption("a"), invocation.hasOption("r"), invocation.hasOption("l"), invocation.getRedirect()));
+        registry.register("mkdir", "p", (cli, invocation) -> cli.mkdir(invocation.getTokens()), "batch");
+        registry.register("rmdir", "p", (cli, invocation) -> cli.rmdir(invocation.getTokens()));
+        registry.register("touch", "", (cli, invocation) -> cli.touch(invocation.getTokens()), "batch");
+        registry.register("mv", (cli, invocation) -> cli.mv(invocation.getTokens()));
+        registry.register("cp", "rR", (cli, invocation) -> cli.cp(invocation.getTokens()));
+        registry.register("rm", "rR", (cli, invocation) -> cli.rm(invocation.getTokens()), "parallel=", "async");
+        registry.register("cat", "", (cli, invocation) -> cli.cat(invocation.getTokens(), invocation.getRedirect()), "raw", "flush=");
+        registry.register("wc", "lwc", (cli, invocation) -> cli.wc(invocation.getTokens()));
+        registry.register("cache", (cli, invocation) -> cli.cache(invocation.getTokens()));
+        registry.register("grep", "rcn", (cli, invocation) -> cli.grep(invocation.getTokens()));
+        registry.register("find", (cli, invocation) -> cli.find(invocation.getTokens()));
+        // ls writes the listing itself, cat [--raw] [--flush=MS] > file streams the input into the file.
+        // Both get the redirection through Invocation.getRedirect(), never as words
+        registry.handlesRedirection("ls", words -> true);
+        registry.handlesRedirection("cat", words -> words.stream().skip(1).allMatch(word -> word.startsWith("--")));
+        registry.register("trash", (cli, invocation) -> cli.trash(invocation.getTokens()));
+        registry.register("export", (cli, invocation) -> cli.export(invocation.getTokens()));
+        registry.register("env", (cli, invocation) -> cli.env());
+        registry.register("stats", (cli, invocation) -> cli.stats(invocation.getTokens(), registry.getStats()));
+        registry.register("history", (cli, invocation) -> cli.history(invocation.getTokens()));
+        registry.register("jobs", (cli, invocation) -> cli.listJobs());
+        registry.register("wait", (cli, invocation) -> cli.waitJobs(invocation.getTokens()));
+        registry.register("fg", (cli, invocation) -> cli.fg(invocation.getTokens()));
+        return registry;
+    }
+
+    // exit is not a command, it ends whatever loop reads the commands
+    public static boolean isExit(String command) {
+        return command.equalsIgnoreCase("exit");
+    }
+
+    // command that parses its own arguments
+    public void register(String name, Command command) {
+        register(name, "", command);
+    }
+
+    public void register(String name, String shortOptions, Command command, String... longOptions) {
+        checkNotFrozen();
+        commands.put(name, new Registration(name, command, shortOptions, Set.of(longOptions), false));
+    }
+
+    // help, HELP and Help all work
+    public void registerIgnoreCase(String name, Command command) {
+        checkNotFrozen();
+        commands.put(name.toLowerCase(Locale.ROOT), new Registration(name.toLowerCase(Locale.ROOT), command, "", Set.of(), true));
+    }
+
+    // every other command gets its output redirected by execute(cli, Job)
+    public void handlesRedirection(String name, Predicate<List<String>> when) {
+        checkNotFrozen();
+        ownRedirection.put(name, when);
+    }
+
+    // no registration after this, any number of threads may then run commands at the same time
+    public CommandRegistry freeze() {
+        frozen = true;
+        return this;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen)
+            throw new IllegalStateException("the registry is shared, commands can no longer be registered");
+    }
+
+    public CommandStats getStats() {
+        return stats;
+    }
+
+    public boolean contains(String name) {
+        return lookup(name) != null;
+    }
+
+    // parse the options and run the command, unknown commands go to the error handler
+    public void execute(CommandLineInterpreter cli, List<String> commandTokens) throws IOException {
+        execute(cli, commandTokens, null);
+    }
+
+    private void execute(CommandLineInterpreter cli, List<String> commandTokens, SimpleCommand.Redirect redirect) throws IOException {
+        if (commandTokens.isEmpty())
+            return;
+        String name = commandTokens.get(0);
+        Registration registration = lookup(name);
+        if (registration == null) {
+            cli.errorHandler(name);
+            return;
+        }
+        // what the session and its output counted before the command, the sample is the difference
+        Session session = cli.getSession();
+        OutputSink output = cli.getOutput();
+        long errors = session.getErrors();
+        long bytesRead = session.getBytesRead();
+        long bytesWritten = output.bytesWritten();
+        long entries = session.getEntries();
+        CommandEvents.CommandEvent event = new CommandEvents.CommandEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            Set<String> options = parseOptions(cli, name, registration, commandTokens);
+            if (options != null)
+                registration.command.execute(cli, new Invocation(commandTokens, options, redirect));
+            completed = true;
+        } finally {
+            // an exception is reported by the caller, it still counts as an error of this command
+            long failures = session.getErrors() - errors + (completed ? 0 : 1);
+            long read = session.getBytesRead() - bytesRead;
+            long written = output.bytesWritten() - bytesWritten;
+            long listed = session.getEntries() - entries;
+            stats.record(registration.name, System.nanoTime() - start, failures, read, written, listed);
+            event.end();
+            if (event.shouldCommit()) {
+                event.command = registration.name;
+                event.arguments = String.join(" ", commandTokens.subList(1, commandTokens.size()));
+                event.directory = cli.getCurrentDirectory().getPath();
+                event.errors = failures;
+                event.bytesRead = read;
+                event.bytesWritten = written;
+                event.entries = listed;
+                event.commit();
+            }
+        }
+    }
+
+    // one command, or cmd1 | cmd2 | ... with every stage running at the same time.
+    // A redirection of a stage sends what it writes to the file, opened once; for the last stage that is the
+    // output of the whole job.
+    // A job ending with & is handed to the JobControl of the interpreter and this returns right away
+    public void execute(CommandLineInterpreter cli, Job job) throws IOException {
+        if (job.isBackground()) {
+            JobControl.BackgroundJob started = cli.getJobs().start(job, cli, this);
+            cli.getOutput().println("[" + started.getId() + "] " + started.getCommand());
+            cli.commandFinished();
+            return;
+        }
+        try {
+            if (!job.isPipeline())
+                execute(cli, job.getStages().get(0), true);
+            else
+                Pipeline.run(cli, job.getStages(), SimpleCommand::getName, (stageCli, stage) -> execute(stageCli, stage, false));
+        } catch (IOException e) {
+            if (!job.isPipeline())
+                throw e;
+            cli.reportError("Error executing pipeline: " + e.getMessage());
+        } finally {
+            cli.commandFinished();
+        }
+    }
+
+    // one command of a line. Its > or >> goes to the command when it writes the file itself and is alone on the line,
+    // otherwise the file is opened here and the command writes to it like to the console
+    private void execute(CommandLineInterpreter cli, SimpleCommand command, boolean alone) throws IOException {
+        SimpleCommand.Redirect redirect = command.redirect();
+        if (redirect == null || (alone && redirectsItself(command))) {
+            execute(cli, command.getWords(), redirect);
+            return;
+        }
+        CommandEvents.RedirectionEvent event = new CommandEvents.RedirectionEvent();
+        event.begin();
+        Path path = Redirection.target(cli.getCurrentDirectory(), redirect.target());
+        OutputSink redirected;
+        try {
+            redirected = cli.openRedirection(redirect.target(), redirect.append());
+        } catch (IOException e) {
+            cli.reportError("Error redirecting to " + redirect.target() + ": " + e.getMessage());
+            return;
+        }
+        try {
+            execute(cli.withStreams(null, redirected), command.getWords(), null);
+        } finally {
+            redirected.close();
+            Redirection.redirected(event, path, redirect.append(), redirected.bytesWritten());
+        }
+    }
+
+    private boolean redirectsItself(SimpleCommand command) {
+        Predicate<List<String>> when = ownRedirection.get(command.getName());
+        return when != null && when.test(command.getWords());
+    }
+
+    private Registration lookup(String name) {
+        Registration registration = commands.get(name);
+        if (registration == null) {
+            registration = commands.get(name.toLowerCase(Locale.ROOT));
+            if (registration != null && !registration.ignoreCase)
+                return null;
+        }
+        return registration;
+    }
+
+    // options are the leading tokens starting with -, null when one of them is not accepted by the command
+    private static Set<String> parseOptions(CommandLineInterpreter cli, String name, Registration registration, List<String> commandTokens) {
+        if (registration.shortOptions.isEmpty() && registration.longOptions.isEmpty())
+            return Collections.emptySet();
+        Set<String> options = new HashSet<>();
+        for (int i = 1; i < commandTokens.size(); i++) {
+            String token = commandTokens.get(i);
+            if (token.equals("--") || !token.startsWith("-") || token.length() == 1)
+                break;
+            if (token.startsWith("--")) {
+                String option = token.substring(2);
+                int equals = option.indexOf('=');
+                if (equals >= 0 ? registration.longOptions.contains(option.substring(0, equals + 1))
+                        : registration.longOptions.contains(option + "=")) {
+                    if (equals < 0) {
+                        cli.reportError(name + ": option '" + token + "' requires an argument");
+                        return null;
+                    }
+                    options.add(option.substring(0, equals));
+                    continue;
+                }
+                if (!registration.longOptions.contains(option)) {
+                    cli.reportError(name + ": unrecognized option '" + token + "'");
+                    return null;
+                }
+                options.add(option);
+                continue;
+            }
+            for (int j = 1; j < token.length(); j++) {
+                char flag = token.charAt(j);
+                if (registration.shortOptions.indexOf(flag) < 0) {
+                    cli.reportError(name + ": invalid option -- '" + flag + "'");
+                    return null;
+                }
+                options.add(String.valueOf(flag));
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,131 @@
+package org.os;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// What every command cost since the start of the process: latency percentiles, calls, errors, bytes read
+// and written and directory entries handled. The registry records one sample per command it runs, a sample
+// is a map lookup and a few counter increments, the counters of a command are allocated at its first run.
+// stats prints the table, -Dcli.stats.dump=file appends it to a file every cli.stats.interval seconds
+public class CommandStats {
+
+    public static final long DEFAULT_DUMP_SECONDS = 60;
+
+    private static CommandStats defaultStats;
+
+    public static final class Metrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder entries = new LongAdder();
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getBytesRead() {
+            return bytesRead.sum();
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.sum();
+        }
+
+        public long getEntries() {
+            return entries.sum();
+        }
+    }
+
+    private final Map<String, Metrics> commands = new ConcurrentHashMap<>();
+
+    // the one of the process, dumping to a file when -Dcli.stats.dump is set
+    public static synchronized CommandStats getDefault() {
+        if (defaultStats == null) {
+            defaultStats = new CommandStats();
+            String dump = System.getProperty("cli.stats.dump");
+            if (dump != null)
+                defaultStats.startDump(Path.of(dump), Long.getLong("cli.stats.interval", DEFAULT_DUMP_SECONDS));
+        }
+        return defaultStats;
+    }
+
+    public void record(String command, long nanos, long errors, long bytesRead, long bytesWritten, long entries) {
+        Metrics metrics = commands.get(command);
+        if (metrics == null)
+            metrics = commands.computeIfAbsent(command, name -> new Metrics());
+        metrics.latency.record(nanos);
+        if (errors > 0)
+            metrics.errors.add(errors);
+        if (bytesRead > 0)
+            metrics.bytesRead.add(bytesRead);
+        if (bytesWritten > 0)
+            metrics.bytesWritten.add(bytesWritten);
+        if (entries > 0)
+            metrics.entries.add(entries);
+    }
+
+    // null when the command never ran
+    public Metrics get(String command) {
+        return commands.get(command);
+    }
+
+    public void reset() {
+        commands.clear();
+    }
+
+    // one line per command, by name, times in microseconds
+    public void print(Writer out) throws IOException {
+        out.write(String.format(Locale.ROOT, "%-8s %8s %10s %10s %10s %10s %10s %7s %12s %12s %9s%n", "command", "calls",
+                "mean(us)", "p50(us)", "p90(us)", "p99(us)", "max(us)", "errors", "read", "written", "entries"));
+        for (Map.Entry<String, Metrics> entry : new TreeMap<>(commands).entrySet()) {
+            Metrics metrics = entry.getValue();
+            LatencyHistogram latency = metrics.latency;
+            out.write(String.format(Locale.ROOT, "%-8s %8d %10.1f %10.1f %10.1f %10.1f %10.1f %7d %12d %12d %9d%n", entry.getKey(),
+                    latency.count(), latency.mean() / 1000, latency.percentile(0.5) / 1000.0, latency.percentile(0.9) / 1000.0,
+                    latency.percentile(0.99) / 1000.0, latency.max() / 1000.0, metrics.getErrors(), metrics.getBytesRead(),
+                    metrics.getBytesWritten(), metrics.getEntries()));
+        }
+    }
+
+    // the table with a timestamp at the end of the file now
+    public void dump(Path file) throws IOException {
+        Redirection.write(file, true, writer -> {
+            writer.write("# " + Instant.now() + System.lineSeparator());
+            print(writer);
+        });
+    }
+
+    // dump every intervalSeconds on a daemon thread, and once more when the process ends
+    public void startDump(Path file, long intervalSeconds) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "stats-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runnable dump = () -> {
+            try {
+                dump(file);
+            } catch (IOException e) {
+                System.err.println("stats: cannot write " + file + ": " + e.getMessage());
+            }
+        };
+        long interval = Math.max(1, intervalSeconds);
+        scheduler.scheduleAtFixedRate(dump, interval, interval, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(dump, "stats-dump-exit"));
+    }
+}
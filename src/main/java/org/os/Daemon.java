@@ -0,0 +1,271 @@
+package org.os;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import jdk.net.ExtendedSocketOptions;
+import jdk.net.UnixDomainPrincipal;
+
+// cli --daemon: one JVM that stays up with a warm CommandEngine and serves DaemonClient over a Unix domain socket.
+// Every connection is a session of its own on a virtual thread, in the directory of the client, while the JIT
+// compiled code, the listing cache and the stats are shared by all of them.
+// The client sends its directory, its arguments and then its stdin in frames, the daemon answers with output
+// frames and one exit frame. The arguments are the words of one command (-c line: a whole command line),
+// without them stdin is a script
+public class Daemon implements Closeable {
+
+    //client -> daemon: a frame of stdin is its length and the bytes, END_OF_INPUT as length ends it
+    public static final int END_OF_INPUT = -1;
+    //daemon -> client: OUTPUT or ERROR (stderr), length, bytes, or EXIT, exit code
+    public static final byte OUTPUT = 'O';
+    public static final byte ERROR = 'E';
+    public static final byte EXIT = 'X';
+
+    private final CommandEngine engine;
+    private final Path socket;
+    private ServerSocketChannel server;
+    //the user the socket belongs to, the only one served
+    private UserPrincipal owner;
+
+    public Daemon(CommandEngine engine, Path socket) {
+        this.engine = engine;
+        this.socket = socket;
+    }
+
+    // -Dcli.socket, or cli.sock in $XDG_RUNTIME_DIR, or in cli-<user> in the temporary directory
+    public static Path defaultSocket() {
+        String socket = System.getProperty("cli.socket");
+        if (socket != null)
+            return Path.of(socket);
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        if (runtime != null && !runtime.isEmpty())
+            return Path.of(runtime, "cli.sock");
+        return Path.of(System.getProperty("java.io.tmpdir"), "cli-" + System.getProperty("user.name"), "cli.sock");
+    }
+
+    // binds the socket in a directory only the owner can enter, created if needed, so nobody else can reach
+    // the socket even before its own permissions are set. A socket file left by a daemon that is gone is replaced
+    public void bind() throws IOException {
+        Path directory = socket.toAbsolutePath().getParent();
+        boolean posix = directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+        if (posix) {
+            privateDirectory(directory);
+        } else {
+            Files.createDirectories(directory);
+        }
+        if (Files.exists(socket)) {
+            if (isListening(socket))
+                throw new IOException("a daemon is already listening on " + socket);
+            Files.delete(socket);
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+        if (posix)
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+        owner = Files.getOwner(socket);
+    }
+
+    private static void privateDirectory(Path directory) throws IOException {
+        Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rwx------");
+        if (Files.notExists(directory)) {
+            Files.createDirectories(directory.getParent());
+            Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(ownerOnly));
+        }
+        UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS).equals(user)
+                || !Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS).equals(ownerOnly))
+            throw new IOException(directory + " must be a directory of " + user.getName() + " with mode 700");
+    }
+
+    private static boolean isListening(Path socket) {
+        try (SocketChannel probe = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            return probe.isConnected();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // accepts connections until close()
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel connection;
+            try {
+                connection = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            Thread.ofVirtual().name("daemon-session").start(() -> session(connection));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (server != null)
+            server.close();
+        Files.deleteIfExists(socket);
+    }
+
+    private void session(SocketChannel connection) {
+        Thread forwarder = null;
+        try (connection) {
+            if (!sameUser(connection))
+                return;
+            DataInputStream request = new DataInputStream(new BufferedInputStream(Channels.newInputStream(connection)));
+            DataOutputStream response = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(connection)));
+            String directory = request.readUTF();
+            int count = request.readInt();
+            List<String> arguments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                arguments.add(request.readUTF());
+
+            // stdin of the client, read while the commands run
+            BoundedPipe input = new BoundedPipe();
+            forwarder = Thread.ofVirtual().name("daemon-stdin").start(() -> forwardInput(request, input.sink()));
+            OutputSink output = OutputSink.stream(new FrameStream(response, OUTPUT), OutputSink.FlushPolicy.PER_COMMAND);
+            int exitCode;
+            try {
+                exitCode = run(new File(directory), arguments, input, output);
+            } catch (IOException | RuntimeException e) {
+                // the command failed, not the connection: the client gets the reason on its stderr
+                output.flush();
+                new FrameStream(response, ERROR).write(("cli: " + e.getMessage() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+                exitCode = 1;
+            } finally {
+                // nothing reads the input anymore, the forwarder stops at its next write
+                input.source().close();
+            }
+            output.flush();
+            synchronized (response) {
+                response.writeByte(EXIT);
+                response.writeInt(exitCode);
+                response.flush();
+            }
+        } catch (IOException e) {
+            // the client went away, nothing to tell it
+        }
+        // the closed connection ends its read of the next frame
+        if (forwarder != null) {
+            try {
+                forwarder.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // the socket is in a directory only its owner can enter, a peer of another user is turned away all the same
+    private boolean sameUser(SocketChannel connection) throws IOException {
+        UnixDomainPrincipal peer;
+        try {
+            peer = connection.getOption(ExtendedSocketOptions.SO_PEERCRED);
+        } catch (UnsupportedOperationException e) {
+            return true;
+        }
+        return peer.user().getName().equals(owner.getName());
+    }
+
+    private int run(File directory, List<String> arguments, BoundedPipe input, OutputSink output) throws IOException {
+        if (!directory.isDirectory())
+            throw new IOException("No such directory: " + directory);
+        CommandLineInterpreter cli = engine.openSession(directory, input.source(), output);
+        if (arguments.size() == 2 && arguments.get(0).equals("-c")) {
+            // like sh -c, a whole command line: cli -c 'ls | wc -l'
+            engine.execute(cli, arguments.get(1));
+            return cli.takeFailure() ? 1 : 0;
+        }
+        if (!arguments.isEmpty()) {
+            // the words as the shell of the client split them, cli cat 'my notes.txt' reads one file
+            engine.execute(cli, quote(arguments));
+            return cli.takeFailure() ? 1 : 0;
+        }
+        ScriptRunner runner = new ScriptRunner(cli, engine, ScriptRunner.ErrorPolicy.CONTINUE);
+        ScriptRunner.Result result = runner.run(new BufferedReader(new InputStreamReader(input.source())));
+        return result.failures() > 0 ? 1 : 0;
+    }
+
+    // every word in single quotes, a quote in it as '\'' so the parser gives the word back as it is
+    static String quote(List<String> words) {
+        StringBuilder line = new StringBuilder();
+        for (String word : words) {
+            if (!line.isEmpty())
+                line.append(' ');
+            line.append('\'').append(word.replace("'", "'\\''")).append('\'');
+        }
+        return line.toString();
+    }
+
+    private static void forwardInput(DataInputStream request, OutputStream input) {
+        try (input) {
+            byte[] buffer = new byte[8 * 1024];
+            int length;
+            while ((length = request.readInt()) != END_OF_INPUT) {
+                while (length > 0) {
+                    int read = request.read(buffer, 0, Math.min(length, buffer.length));
+                    if (read < 0)
+                        return;
+                    input.write(buffer, 0, read);
+                    length -= read;
+                }
+            }
+        } catch (IOException e) {
+            // the connection is closed, or nobody reads the input anymore
+        }
+    }
+
+    // output of the session or an error of the daemon, every write becomes one frame
+    private static final class FrameStream extends OutputStream {
+        private final DataOutputStream response;
+        private final byte type;
+
+        private FrameStream(DataOutputStream response, byte type) {
+            this.response = response;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (response) {
+                response.writeByte(type);
+                response.writeInt(len);
+                response.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (response) {
+                response.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.os;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// The client of cli --daemon: sends the working directory, the arguments and stdin, copies the output to stdout
+// and exits with the exit code of the commands. It loads nothing of the CLI but this class and the constants of
+// Daemon, so it starts about as fast as the JVM does
+public final class DaemonClient {
+
+    //exit code when there is no daemon or it went away before the end
+    public static final int NO_DAEMON = 2;
+
+    private DaemonClient() {
+    }
+
+    // [--socket=path] [command word... | -c line], without words stdin is a script
+    public static void main(String[] args) {
+        Path socket = Daemon.defaultSocket();
+        List<String> arguments = Arrays.asList(args);
+        if (!arguments.isEmpty() && arguments.get(0).startsWith("--socket=")) {
+            socket = Path.of(arguments.get(0).substring("--socket=".length()));
+            arguments = arguments.subList(1, arguments.size());
+        }
+        int exitCode;
+        try {
+            exitCode = run(socket, System.getProperty("user.dir"), arguments, System.in, System.out, System.err);
+        } catch (IOException e) {
+            System.err.println("cli: no daemon on " + socket + " (start one with cli --daemon): " + e.getMessage());
+            exitCode = NO_DAEMON;
+        }
+        System.out.flush();
+        System.err.flush();
+        System.exit(exitCode);
+    }
+
+    // one request, the exit code of the daemon or NO_DAEMON when the connection ends before it
+    public static int run(Path socket, String directory, List<String> arguments, InputStream input, OutputStream output,
+                          OutputStream error) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            request.writeUTF(directory);
+            request.writeInt(arguments.size());
+            for (String argument : arguments)
+                request.writeUTF(argument);
+            request.flush();
+
+            // the input may never end (a terminal), the thread does not keep the client alive
+            Thread forward = new Thread(() -> forwardInput(input, request), "client-stdin");
+            forward.setDaemon(true);
+            forward.start();
+
+            DataInputStream response = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] buffer = new byte[8 * 1024];
+            try {
+                while (true) {
+                    byte type = response.readByte();
+                    if (type == Daemon.EXIT)
+                        return response.readInt();
+                    OutputStream target = type == Daemon.ERROR ? error : output;
+                    int length = response.readInt();
+                    while (length > 0) {
+                        int read = response.read(buffer, 0, Math.min(length, buffer.length));
+                        if (read < 0)
+                            return NO_DAEMON;
+                        target.write(buffer, 0, read);
+                        length -= read;
+                    }
+                    if (target == error)
+                        error.flush();
+                    // frames come per command, what is there now is shown now
+                    if (response.available() == 0)
+                        output.flush();
+                }
+            } catch (EOFException e) {
+                return NO_DAEMON;
+            } finally {
+                output.flush();
+            }
+        }
+    }
+
+    private static void forwardInput(InputStream input, DataOutputStream request) {
+        byte[] buffer = new byte[8 * 1024];
+        try {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                request.writeInt(read);
+                request.write(buffer, 0, read);
+                request.flush();
+            }
+            request.writeInt(Daemon.END_OF_INPUT);
+            request.flush();
+        } catch (IOException e) {
+            // the daemon closed the connection, the commands are done
+        }
+    }
+}
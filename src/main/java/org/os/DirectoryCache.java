@@ -0,0 +1,198 @@
+package org.os;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// LRU cache of directory listings, bounded by the total number of cached entries.
+// Every cached directory is registered with a WatchService, any create / delete / modify event
+// (ours or from another process) drops its listing so the next ls reads the disk again.
+// Changes made by the interpreter itself are invalidated right away since watch events arrive asynchronously
+public class DirectoryCache {
+
+    // one entry of a cached listing, the attributes are the ones read when the listing was loaded
+    public record Entry(String name, BasicFileAttributes attributes) {
+    }
+
+    // a load in progress, remembers the invalidation count it started from
+    public static final class Load {
+        private final Path directory;
+        private final long version;
+
+        private Load(Path directory, long version) {
+            this.directory = directory;
+            this.version = version;
+        }
+    }
+
+    private static DirectoryCache defaultCache;
+
+    private final int maxEntries;
+    private final int maxEntriesPerDirectory;
+
+    // access ordered, the eldest directory is the least recently listed one
+    private final LinkedHashMap<Path, List<Entry>> listings = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private WatchService watcher;
+    private int cachedEntries;
+
+    // bumped on every invalidation, a load that saw it change may be stale and is not stored
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public DirectoryCache(int maxEntries, int maxEntriesPerDirectory) {
+        this.maxEntries = maxEntries;
+        this.maxEntriesPerDirectory = Math.min(maxEntries, maxEntriesPerDirectory);
+    }
+
+    // the cache shared by every interpreter of this process
+    public static synchronized DirectoryCache getDefault() {
+        if (defaultCache == null) {
+            int maxEntries = Integer.getInteger("cli.cache.maxEntries", 200_000);
+            defaultCache = new DirectoryCache(maxEntries, Integer.getInteger("cli.cache.maxEntriesPerDirectory", maxEntries / 4));
+        }
+        return defaultCache;
+    }
+
+    public int getMaxEntriesPerDirectory() {
+        return maxEntriesPerDirectory;
+    }
+
+    // cached listing of the directory or null when it has to be read from disk
+    public synchronized List<Entry> lookup(Path directory) {
+        directory = key(directory);
+        List<Entry> entries = listings.get(directory);
+        if (entries == null)
+            misses++;
+        else
+            hits++;
+        return entries;
+    }
+
+    // called before the directory is read, the watch is in place before the first entry is seen
+    public synchronized Load beginLoad(Path directory) {
+        directory = key(directory);
+        watch(directory);
+        return new Load(directory, version);
+    }
+
+    // stores what was read unless something changed in the meantime, null entries means too big to be cached
+    public synchronized void complete(Load load, List<Entry> entries) {
+        if (entries == null || load.version != version || entries.size() > maxEntriesPerDirectory || !watchKeys.containsKey(load.directory)) {
+            // nothing to keep up to date for a directory that is not cached
+            if (!listings.containsKey(load.directory))
+                unwatch(load.directory);
+            return;
+        }
+        List<Entry> previous = listings.put(load.directory, Collections.unmodifiableList(entries));
+        if (previous != null)
+            cachedEntries -= previous.size();
+        cachedEntries += entries.size();
+        evict();
+    }
+
+    // drop the listing of the directory, e.g. after a file was created or removed in it
+    public synchronized void invalidate(Path directory) {
+        directory = key(directory);
+        version++;
+        List<Entry> removed = listings.remove(directory);
+        if (removed != null) {
+            cachedEntries -= removed.size();
+            invalidations++;
+        }
+        unwatch(directory);
+    }
+
+    public synchronized void clear() {
+        version++;
+        for (Path directory : List.copyOf(watchKeys.keySet()))
+            unwatch(directory);
+        listings.clear();
+        cachedEntries = 0;
+    }
+
+    public synchronized String stats() {
+        long lookups = hits + misses;
+        return "hits: " + hits + ", misses: " + misses + ", evictions: " + evictions + ", invalidations: " + invalidations
+                + ", hit ratio: " + (lookups == 0 ? 0 : hits * 100 / lookups) + "%"
+                + System.lineSeparator()
+                + "cached directories: " + listings.size() + ", cached entries: " + cachedEntries + "/" + maxEntries;
+    }
+
+    // cd keeps .. and . in the current directory, the cache does not
+    private static Path key(Path directory) {
+        return directory.toAbsolutePath().normalize();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Path, List<Entry>>> eldest = listings.entrySet().iterator();
+        while (cachedEntries > maxEntries && eldest.hasNext()) {
+            Map.Entry<Path, List<Entry>> entry = eldest.next();
+            eldest.remove();
+            cachedEntries -= entry.getValue().size();
+            evictions++;
+            unwatch(entry.getKey());
+        }
+    }
+
+    private void watch(Path directory) {
+        if (watchKeys.containsKey(directory))
+            return;
+        try {
+            if (watcher == null) {
+                watcher = FileSystems.getDefault().newWatchService();
+                Thread thread = new Thread(this::processEvents, "directory-cache-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            WatchKey key = directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchKeys.put(directory, key);
+            watchedDirectories.put(key, directory);
+        } catch (IOException | UnsupportedOperationException e) {
+            // not watchable (other file system, too many watches ...), complete() will not cache it
+        }
+    }
+
+    private void unwatch(Path directory) {
+        WatchKey key = watchKeys.remove(directory);
+        if (key != null) {
+            watchedDirectories.remove(key);
+            key.cancel();
+        }
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                // the events themselves do not matter, any of them (overflow too) makes the listing stale
+                key.pollEvents();
+                synchronized (this) {
+                    Path directory = watchedDirectories.get(key);
+                    if (directory != null)
+                        invalidate(directory);
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // cache is going away
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.os;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Incremental listing engine shared by ls, ls -a, ls -r and ls -l
+// entries are read one by one from a DirectoryStream and written out in chunks,
+// so a huge directory never has to sit in memory as an array or one big String.
+// The attributes of an entry are read in one bulk call instead of separate isHidden / isDirectory lookups
+public class DirectoryLister {
+
+    //number of entries written before the target is flushed
+    public static final int CHUNK_SIZE = 1024;
+
+    private static final DateTimeFormatter MODIFIED_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final boolean showHidden;
+    private final boolean reversed;
+    private final boolean longFormat;
+
+    public DirectoryLister(boolean showHidden, boolean reversed) {
+        this(showHidden, reversed, false);
+    }
+
+    public DirectoryLister(boolean showHidden, boolean reversed, boolean longFormat) {
+        this.showHidden = showHidden;
+        this.reversed = reversed;
+        this.longFormat = longFormat;
+    }
+
+    public boolean isLongFormat() {
+        return longFormat;
+    }
+
+    // writes "1- /dir/, 2-file, ..." (or one line per entry for -l) to out and returns the number of entries written
+    public int list(Path directory, Writer out) throws IOException {
+        return list(directory, out, null);
+    }
+
+    // same as list, served from the cache when it holds the directory and filling it otherwise
+    public int list(Path directory, Writer out, DirectoryCache cache) throws IOException {
+        CommandEvents.DirectoryListingEvent event = new CommandEvents.DirectoryListingEvent();
+        event.begin();
+        int entries = listEntries(directory, out, cache);
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = directory.toString();
+            event.entries = entries;
+            event.commit();
+        }
+        return entries;
+    }
+
+    private int listEntries(Path directory, Writer out, DirectoryCache cache) throws IOException {
+        if (!Files.isDirectory(directory))
+            return 0;
+        Set<String> views = directory.getFileSystem().supportedFileAttributeViews();
+        boolean posix = views.contains("posix");
+        boolean dos = !posix && views.contains("dos");
+
+        Emitter emitter = new Emitter(out);
+        List<DirectoryCache.Entry> cached = cache == null ? null : cache.lookup(directory);
+        if (cached != null) {
+            for (DirectoryCache.Entry entry : cached) {
+                if (showHidden || !isHidden(entry.name(), entry.attributes()))
+                    emitter.emit(entry.name(), entry.attributes());
+            }
+            return emitter.finish();
+        }
+
+        // a cached listing has to hold the hidden entries too, ls -a is answered from the same copy
+        DirectoryCache.Load load = cache == null ? null : cache.beginLoad(directory);
+        List<DirectoryCache.Entry> loaded = load == null ? null : new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                // on posix hidden only means a leading dot, no need to touch the disk to skip it
+                if (loaded == null && posix && !showHidden && name.startsWith("."))
+                    continue;
+                BasicFileAttributes attributes = readAttributes(entry, posix, dos);
+                // removed while the listing was running
+                if (attributes == null)
+                    continue;
+                if (loaded != null) {
+                    loaded.add(new DirectoryCache.Entry(name, attributes));
+                    // too big to be cached, keep streaming with bounded memory
+                    if (loaded.size() > cache.getMaxEntriesPerDirectory())
+                        loaded = null;
+                }
+                if (showHidden || !isHidden(name, attributes))
+                    emitter.emit(name, attributes);
+            }
+        }
+        if (load != null)
+            cache.complete(load, loaded);
+        return emitter.finish();
+    }
+
+    // leading dot on posix, the hidden attribute on dos
+    private static boolean isHidden(String name, BasicFileAttributes attributes) {
+        if (attributes instanceof DosFileAttributes dosAttributes)
+            return dosAttributes.isHidden();
+        return name.startsWith(".");
+    }
+
+    // writes entries in order, or keeps them until finish() when the listing is reversed
+    private final class Emitter {
+        private final Writer out;
+        // the last entry has to come first, so only the rendered names are kept
+        private final List<String> pending = reversed ? new ArrayList<>() : null;
+        private int count;
+
+        private Emitter(Writer out) {
+            this.out = out;
+        }
+
+        private void emit(String name, BasicFileAttributes attributes) throws IOException {
+            String rendered = longFormat ? longLine(name, attributes) : shortName(name, attributes);
+            if (pending != null)
+                pending.add(rendered);
+            else
+                write(rendered);
+        }
+
+        private int finish() throws IOException {
+            if (pending != null) {
+                for (int i = pending.size() - 1; i >= 0; i--)
+                    write(pending.get(i));
+            }
+            out.flush();
+            return count;
+        }
+
+        private void write(String rendered) throws IOException {
+            count++;
+            if (longFormat)
+                out.write(rendered);
+            else
+                appendEntry(out, count, rendered);
+            if (count % CHUNK_SIZE == 0)
+                out.flush();
+        }
+    }
+
+    // one stat per entry, the posix and dos views carry everything ls needs including hidden and permissions
+    private static BasicFileAttributes readAttributes(Path entry, boolean posix, boolean dos) throws IOException {
+        Class<? extends BasicFileAttributes> type =
+                posix ? PosixFileAttributes.class : dos ? DosFileAttributes.class : BasicFileAttributes.class;
+        try {
+            return Files.readAttributes(entry, type);
+        } catch (NoSuchFileException e) {
+            // dangling symbolic link, describe the link itself
+            try {
+                return Files.readAttributes(entry, type, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException gone) {
+                return null;
+            }
+        }
+    }
+
+    // a trailing separator marks directories, it can not be part of a file name
+    private static String shortName(String name, BasicFileAttributes attributes) {
+        return attributes.isDirectory() ? name + "/" : name;
+    }
+
+    // drwxr-xr-x       4096 2024-10-20 13:45 name/
+    private static String longLine(String name, BasicFileAttributes attributes) {
+        StringBuilder line = new StringBuilder(name.length() + 40);
+        line.append(attributes.isDirectory() ? 'd' : attributes.isSymbolicLink() ? 'l' : '-');
+        if (attributes instanceof PosixFileAttributes posixAttributes)
+            line.append(PosixFilePermissions.toString(posixAttributes.permissions()));
+        else if (attributes instanceof DosFileAttributes dosAttributes && dosAttributes.isReadOnly())
+            line.append("r--r--r--");
+        else
+            line.append("rw-rw-rw-");
+        String size = Long.toString(attributes.size());
+        line.append(' ').append(" ".repeat(Math.max(0, 10 - size.length()))).append(size);
+        line.append(' ').append(MODIFIED_FORMAT.format(attributes.lastModifiedTime().toInstant()));
+        line.append(' ').append(shortName(name, attributes)).append(System.lineSeparator());
+        return line.toString();
+    }
+
+    private static void appendEntry(Writer out, int count, String name) throws IOException {
+        out.write(Integer.toString(count));
+        if (name.endsWith("/")) {
+            out.write("- /");
+            out.write(name, 0, name.length() - 1);
+            out.write("/, ");
+        } else {
+            out.write("-");
+            out.write(name);
+            out.write(", ");
+        }
+    }
+}
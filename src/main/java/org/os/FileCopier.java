@@ -0,0 +1,220 @@
+package org.os;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Copies files with FileChannel.transferTo / transferFrom so the bytes stay in the kernel
+// (copy_file_range or sendfile where the platform has them) instead of going through a Java buffer.
+// A big file is cut into chunks copied at the same time, every chunk with its own source channel and a
+// positional write into the shared target. Trees are copied depth first, links are copied as links
+public class FileCopier {
+
+    //files from this size on are copied in parallel chunks, of at least a quarter of it
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 64L * 1024 * 1024;
+
+    public record Result(long files, long bytes, long nanos) {
+
+        public String summary() {
+            double seconds = nanos / 1e9;
+            double megabytesPerSecond = seconds == 0 ? 0 : bytes / (1024.0 * 1024.0) / seconds;
+            return String.format(Locale.ROOT, "%d files, %d bytes in %d ms (%.1f MB/s)", files, bytes, nanos / 1_000_000, megabytesPerSecond);
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final long parallelThreshold;
+    private long files;
+    private long bytes;
+    private boolean preserveAttributes;
+
+    public FileCopier() {
+        this(ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public FileCopier(ExecutorService executor, int parallelism, long parallelThreshold) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+    }
+
+    // a file or, when recursive, a directory with everything in it. The target must not be inside the source
+    public Result copy(Path source, Path target, boolean recursive) throws IOException {
+        return copy(source, target, recursive, false);
+    }
+
+    // the same, with the permissions and times of every entry kept when preserveAttributes (what mv needs)
+    public Result copy(Path source, Path target, boolean recursive, boolean preserveAttributes) throws IOException {
+        this.preserveAttributes = preserveAttributes;
+        files = 0;
+        bytes = 0;
+        long start = System.nanoTime();
+        if (Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS)) {
+            if (!recursive)
+                throw new IOException("omitting directory " + source);
+            if (target.toAbsolutePath().normalize().startsWith(source.toAbsolutePath().normalize()))
+                throw new IOException("cannot copy a directory into itself");
+            copyTree(source, target);
+        } else {
+            copyEntry(source, target);
+        }
+        return new Result(files, bytes, System.nanoTime() - start);
+    }
+
+    private void copyTree(Path source, Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                // the parent of the target has to exist, like for a single file
+                Path copy = target.resolve(source.relativize(directory).toString());
+                if (!Files.isDirectory(copy))
+                    Files.createDirectory(copy);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                copyEntry(file, target.resolve(source.relativize(file).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                if (e != null)
+                    throw e;
+                // after the entries, creating them changed the modification time
+                if (preserveAttributes)
+                    copyAttributes(directory, target.resolve(source.relativize(directory).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // permissions where the file system has them, modification and access time
+    private static void copyAttributes(Path source, Path target) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        PosixFileAttributeView posix = Files.getFileAttributeView(target, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (posix != null)
+            posix.setPermissions(Files.getPosixFilePermissions(source, LinkOption.NOFOLLOW_LINKS));
+        Files.getFileAttributeView(target, BasicFileAttributeView.class, LinkOption.NOFOLLOW_LINKS)
+                .setTimes(attributes.lastModifiedTime(), attributes.lastAccessTime(), null);
+    }
+
+    private void copyEntry(Path source, Path target) throws IOException {
+        if (Files.isSymbolicLink(source)) {
+            if (preserveAttributes)
+                Files.copy(source, target, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            else
+                Files.copy(source, target, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.REPLACE_EXISTING);
+            files++;
+            return;
+        }
+        // opening the target truncates it, the source would be gone before it is read
+        if (isSameFile(source, target))
+            throw new IOException(sameFileMessage(source, target));
+        // the read and the write are the same transfer, both events cover all of it
+        CommandEvents.FileReadEvent read = new CommandEvents.FileReadEvent();
+        CommandEvents.FileWriteEvent write = new CommandEvents.FileWriteEvent();
+        read.begin();
+        write.begin();
+        long size;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            size = in.size();
+            if (size >= parallelThreshold && parallelism > 1)
+                copyChunks(source, out, size);
+            else
+                copyRange(in, out, 0, size);
+            bytes += size;
+            files++;
+        }
+        // once the channels are closed, a last write would move the time again
+        if (preserveAttributes)
+            copyAttributes(source, target);
+        read.end();
+        write.end();
+        if (read.shouldCommit()) {
+            read.path = source.toString();
+            read.bytes = size;
+            read.commit();
+        }
+        if (write.shouldCommit()) {
+            write.path = target.toString();
+            write.bytes = size;
+            write.commit();
+        }
+    }
+
+    // whether the target is the source under another name (cp a.txt ., a hard link)
+    public static boolean isSameFile(Path source, Path target) throws IOException {
+        return Files.exists(target, LinkOption.NOFOLLOW_LINKS) && Files.isSameFile(source, target);
+    }
+
+    public static String sameFileMessage(Path source, Path target) {
+        return "'" + source.getFileName() + "' and '" + target.getFileName() + "' are the same file";
+    }
+
+    private void copyChunks(Path source, FileChannel out, long size) throws IOException {
+        long chunk = Math.max(parallelThreshold / 4, (size + parallelism - 1) / parallelism);
+        List<Future<Void>> chunks = new ArrayList<>();
+        try {
+            for (long position = 0; position < size; position += chunk) {
+                long from = position;
+                long count = Math.min(chunk, size - position);
+                chunks.add(executor.submit(() -> {
+                    try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                        in.position(from);
+                        long copied = 0;
+                        while (copied < count) {
+                            long sent = out.transferFrom(in, from + copied, count - copied);
+                            if (sent <= 0)
+                                throw new IOException(source + " changed while it was copied");
+                            copied += sent;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : chunks)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("copy interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause)
+                throw cause;
+            throw new IOException(e.getCause());
+        } finally {
+            for (Future<Void> future : chunks)
+                future.cancel(false);
+        }
+    }
+
+    private static void copyRange(FileChannel in, FileChannel out, long position, long count) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long sent = in.transferTo(position, end - position, out);
+            if (sent <= 0)
+                break;
+            position += sent;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.os;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+// find: walks a tree with one virtual thread per directory, at most maxConcurrency of them at a time.
+// When no permit is free the directory is walked inline by the thread that found it, so the walk never
+// queues directories: memory is bounded by the open directory streams, whatever the size of the tree.
+// Matches are handed to the listener as soon as they are found, from whatever thread found them
+public class FileFinder {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+    public interface Listener {
+        // one match, display is the root as given followed by the path below it
+        void found(String display);
+
+        void failed(String display, IOException e);
+
+        // true once nobody wants more matches, e.g. the reader of the pipe is gone
+        default boolean stopped() {
+            return false;
+        }
+    }
+
+    public record Result(long directories, long entries, long matches) {
+    }
+
+    private final PathMatcher nameMatcher;
+    //'f', 'd' or 0 for any
+    private final char type;
+    private final LongPredicate sizeMatcher;
+    private final int maxConcurrency;
+
+    public FileFinder(String nameGlob, char type, LongPredicate sizeMatcher, int maxConcurrency) {
+        this.nameMatcher = nameGlob == null ? null : FileSystems.getDefault().getPathMatcher("glob:" + nameGlob);
+        this.type = type;
+        this.sizeMatcher = sizeMatcher;
+        // a Phaser takes at most 65535 parties
+        this.maxConcurrency = Math.max(1, Math.min(maxConcurrency, 65_000));
+    }
+
+    // -size like find: [+|-]N[c|k|M|G], c for bytes, no unit for 512 byte blocks.
+    // The size is rounded up to the unit, +N means more than N units, -N less, N exactly N
+    public static LongPredicate parseSize(String size) {
+        int start = size.startsWith("+") || size.startsWith("-") ? 1 : 0;
+        int end = size.length();
+        long unit = 512;
+        char suffix = end > start ? size.charAt(end - 1) : ' ';
+        if (!Character.isDigit(suffix)) {
+            unit = switch (suffix) {
+                case 'c' -> 1;
+                case 'b' -> 512;
+                case 'k' -> 1024;
+                case 'M' -> 1024 * 1024;
+                case 'G' -> 1024 * 1024 * 1024;
+                default -> throw new IllegalArgumentException("invalid size unit: " + suffix);
+            };
+            end--;
+        }
+        long units = Long.parseLong(size.substring(start, end));
+        long bytesPerUnit = unit;
+        return switch (start == 0 ? ' ' : size.charAt(0)) {
+            case '+' -> bytes -> roundUp(bytes, bytesPerUnit) > units;
+            case '-' -> bytes -> roundUp(bytes, bytesPerUnit) < units;
+            default -> bytes -> roundUp(bytes, bytesPerUnit) == units;
+        };
+    }
+
+    private static long roundUp(long bytes, long unit) {
+        return (bytes + unit - 1) / unit;
+    }
+
+    public Result find(Path root, String display, Listener listener) {
+        Walk walk = new Walk(listener);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            listener.failed(display, e);
+            return new Result(0, 0, 0);
+        }
+        Path rootName = root.getFileName() != null ? root.getFileName() : Paths.get(display);
+        walk.visit(rootName, display, attributes);
+        walk.phaser.register();
+        if (attributes.isDirectory())
+            walk.walk(root, display);
+        walk.phaser.arriveAndAwaitAdvance();
+        return new Result(walk.directories.get(), walk.entries.get(), walk.matches.get());
+    }
+
+    private boolean matches(Path name, BasicFileAttributes attributes) {
+        if (type == 'f' && !attributes.isRegularFile())
+            return false;
+        if (type == 'd' && !attributes.isDirectory())
+            return false;
+        if (sizeMatcher != null && !sizeMatcher.test(attributes.size()))
+            return false;
+        return nameMatcher == null || nameMatcher.matches(name);
+    }
+
+    // the state of one find call
+    private final class Walk {
+        private final Listener listener;
+        private final Semaphore permits = new Semaphore(maxConcurrency);
+        // one party per running virtual thread plus the caller
+        private final Phaser phaser = new Phaser();
+        private final AtomicLong directories = new AtomicLong();
+        private final AtomicLong entries = new AtomicLong();
+        private final AtomicLong matches = new AtomicLong();
+
+        private Walk(Listener listener) {
+            this.listener = listener;
+        }
+
+        private void visit(Path name, String display, BasicFileAttributes attributes) {
+            entries.incrementAndGet();
+            if (matches(name, attributes)) {
+                matches.incrementAndGet();
+                listener.found(display);
+            }
+        }
+
+        private void walk(Path directory, String display) {
+            directories.incrementAndGet();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    if (listener.stopped())
+                        return;
+                    // the separator of the platform, like the names grep -r prints
+                    String entryDisplay = display.endsWith("/") || display.endsWith(File.separator)
+                            ? display + entry.getFileName() : display + File.separator + entry.getFileName();
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        listener.failed(entryDisplay, e);
+                        continue;
+                    }
+                    visit(entry.getFileName(), entryDisplay, attributes);
+                    if (attributes.isDirectory())
+                        walkSubdirectory(entry, entryDisplay);
+                }
+            } catch (IOException e) {
+                listener.failed(display, e);
+            }
+        }
+
+        private void walkSubdirectory(Path directory, String display) {
+            if (!permits.tryAcquire()) {
+                walk(directory, display);
+                return;
+            }
+            phaser.register();
+            try {
+                Thread.ofVirtual().name("find-" + directory.getFileName()).start(() -> {
+                    try {
+                        walk(directory, display);
+                    } finally {
+                        permits.release();
+                        phaser.arriveAndDeregister();
+                    }
+                });
+            } catch (RuntimeException | Error e) {
+                permits.release();
+                phaser.arriveAndDeregister();
+                throw e;
+            }
+        }
+    }
+}
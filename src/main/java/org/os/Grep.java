@@ -0,0 +1,340 @@
+package org.os;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// grep over memory mapped files. A file is cut into chunks that end on a line boundary, the chunks are searched
+// on the common ForkJoinPool and printed in file order as they complete, with a bounded number in flight.
+// A pattern without regex metacharacters is searched as bytes with Boyer-Moore-Horspool, which skips
+// most of the bytes of lines that do not match, anything else goes through java.util.regex line by line
+public class Grep {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    //biggest part of a file mapped at once, a MappedByteBuffer is indexed by int
+    private static final int MAX_MAPPING = 1 << 30;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    // where in [from, to) the first matching line is: any position inside it, or -1
+    private interface LineMatcher {
+        int find(ByteBuffer buffer, int from, int to);
+    }
+
+    private final LineMatcher matcher;
+    private final boolean lineNumbers;
+    private final boolean countOnly;
+    private final int chunkSize;
+    private final ExecutorService executor;
+    //chunks searched ahead of the one being printed
+    private final int inFlight;
+
+    public Grep(String pattern, boolean lineNumbers, boolean countOnly) {
+        this(pattern, lineNumbers, countOnly, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public Grep(String pattern, boolean lineNumbers, boolean countOnly, int chunkSize, ExecutorService executor) {
+        Charset charset = Charset.defaultCharset();
+        this.matcher = isLiteral(pattern) ? new LiteralMatcher(pattern.getBytes(charset)) : new RegexMatcher(Pattern.compile(pattern), charset);
+        this.lineNumbers = lineNumbers;
+        this.countOnly = countOnly;
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+        this.inFlight = 2 * Runtime.getRuntime().availableProcessors();
+    }
+
+    // no character that means something to java.util.regex
+    public static boolean isLiteral(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if ("\\^$.|?*+()[]{}".indexOf(pattern.charAt(i)) >= 0)
+                return false;
+        }
+        return true;
+    }
+
+    // prints the matching lines (or nothing with countOnly) each preceded by prefix, returns the number of matching lines
+    public long searchFile(Path file, String prefix, OutputSink out) throws IOException {
+        byte[] prefixBytes = prefix.getBytes(out.charset());
+        long matches = 0;
+        long lineOffset = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size && !out.hasError()) {
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAPPING, size - position));
+                int limit = mapped.limit();
+                // the next mapping starts after the last complete line of this one
+                if (position + limit < size) {
+                    int lastLine = lastIndexOf(mapped, (byte) '\n', limit);
+                    if (lastLine >= 0)
+                        limit = lastLine + 1;
+                }
+                ScanTotals totals = searchMapped(mapped, limit, prefixBytes, lineOffset, out);
+                matches += totals.matches;
+                lineOffset += totals.lines;
+                position += limit;
+            }
+        }
+        return matches;
+    }
+
+    // the same for a stream, read one block of lines at a time
+    public long searchStream(InputStream in, String prefix, OutputSink out) throws IOException {
+        byte[] prefixBytes = prefix.getBytes(out.charset());
+        byte[] block = new byte[1024 * 1024];
+        int filled = 0;
+        long matches = 0;
+        long lineOffset = 0;
+        while (!out.hasError()) {
+            int read = in.read(block, filled, block.length - filled);
+            if (read > 0)
+                filled += read;
+            // search the complete lines, keep the rest for the next read
+            int end = read < 0 ? filled : lastIndexOf(ByteBuffer.wrap(block), (byte) '\n', filled) + 1;
+            if (end > 0) {
+                Chunk chunk = scan(ByteBuffer.wrap(block), 0, end);
+                print(chunk, prefixBytes, lineOffset, out);
+                matches += chunk.count;
+                lineOffset += chunk.lines;
+                System.arraycopy(block, end, block, 0, filled - end);
+                filled -= end;
+            } else if (filled == block.length) {
+                // a line longer than the block
+                block = Arrays.copyOf(block, block.length * 2);
+            }
+            if (read < 0)
+                break;
+        }
+        return matches;
+    }
+
+    private record ScanTotals(long matches, long lines) {
+    }
+
+    private ScanTotals searchMapped(ByteBuffer mapped, int limit, byte[] prefix, long lineOffset, OutputSink out) throws IOException {
+        // small enough for one chunk, no task needed
+        if (limit <= chunkSize) {
+            Chunk chunk = scan(mapped, 0, limit);
+            print(chunk, prefix, lineOffset, out);
+            return new ScanTotals(chunk.count, chunk.lines);
+        }
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        long matches = 0;
+        long lines = 0;
+        int next = 0;
+        try {
+            while (next < limit || !pending.isEmpty()) {
+                while (next < limit && pending.size() < inFlight) {
+                    int from = next;
+                    int to = Math.min(limit, from + chunkSize);
+                    if (to < limit) {
+                        int lineEnd = indexOf(mapped, (byte) '\n', to - 1, limit);
+                        to = lineEnd < 0 ? limit : lineEnd + 1;
+                    }
+                    int end = to;
+                    pending.add(executor.submit(() -> scan(mapped, from, end)));
+                    next = to;
+                }
+                Chunk chunk = pending.poll().get();
+                print(chunk, prefix, lineOffset + lines, out);
+                matches += chunk.count;
+                lines += chunk.lines;
+                if (out.hasError())
+                    break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("grep interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            for (Future<Chunk> future : pending)
+                future.cancel(false);
+        }
+        return new ScanTotals(matches, lines);
+    }
+
+    // matching lines of one chunk: line number in the chunk (from 1), start and end of the line
+    private static final class Chunk {
+        private final ByteBuffer buffer;
+        private long[] lineNumbers = new long[16];
+        private int[] bounds = new int[32];
+        private int count;
+        //line breaks in the chunk, where the line numbers of the next one start
+        private long lines;
+
+        private Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void add(long lineNumber, int start, int end) {
+            if (count == lineNumbers.length) {
+                lineNumbers = Arrays.copyOf(lineNumbers, count * 2);
+                bounds = Arrays.copyOf(bounds, count * 4);
+            }
+            lineNumbers[count] = lineNumber;
+            bounds[2 * count] = start;
+            bounds[2 * count + 1] = end;
+            count++;
+        }
+    }
+
+    private Chunk scan(ByteBuffer buffer, int from, int to) {
+        Chunk chunk = new Chunk(buffer);
+        long line = 0;
+        int position = from;
+        while (position < to) {
+            int hit = matcher.find(buffer, position, to);
+            if (hit < 0) {
+                if (lineNumbers)
+                    line += countLines(buffer, position, to);
+                break;
+            }
+            int start = lastIndexOf(buffer, (byte) '\n', hit) + 1;
+            if (start < position)
+                start = position;
+            int end = indexOf(buffer, (byte) '\n', hit, to);
+            if (end < 0)
+                end = to;
+            if (lineNumbers)
+                line += countLines(buffer, position, start);
+            if (countOnly)
+                chunk.count++;
+            else
+                chunk.add(line + 1, start, end);
+            line++;
+            position = end + 1;
+        }
+        chunk.lines = lineNumbers ? line : 0;
+        return chunk;
+    }
+
+    private void print(Chunk chunk, byte[] prefix, long lineOffset, OutputSink out) {
+        if (countOnly)
+            return;
+        byte[] line = new byte[256];
+        for (int i = 0; i < chunk.count; i++) {
+            int start = chunk.bounds[2 * i];
+            int end = chunk.bounds[2 * i + 1];
+            // a windows line break keeps its \r before the \n
+            if (end > start && chunk.buffer.get(end - 1) == '\r')
+                end--;
+            if (line.length < end - start)
+                line = new byte[Math.max(end - start, line.length * 2)];
+            chunk.buffer.get(start, line, 0, end - start);
+            out.write(prefix, 0, prefix.length);
+            if (lineNumbers) {
+                byte[] number = (lineOffset + chunk.lineNumbers[i] + ":").getBytes(out.charset());
+                out.write(number, 0, number.length);
+            }
+            out.write(line, 0, end - start);
+            out.write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+        }
+    }
+
+    private static long countLines(ByteBuffer buffer, int from, int to) {
+        long lines = 0;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n')
+                lines++;
+        }
+        return lines;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value)
+                return i;
+        }
+        return -1;
+    }
+
+    // last position before end holding value, or -1
+    private static int lastIndexOf(ByteBuffer buffer, byte value, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (buffer.get(i) == value)
+                return i;
+        }
+        return -1;
+    }
+
+    // Boyer-Moore-Horspool over bytes, a mismatch moves the window by up to the length of the pattern
+    private static final class LiteralMatcher implements LineMatcher {
+        private final byte[] needle;
+        private final int[] shift = new int[256];
+
+        private LiteralMatcher(byte[] needle) {
+            this.needle = needle;
+            Arrays.fill(shift, Math.max(1, needle.length));
+            for (int i = 0; i < needle.length - 1; i++)
+                shift[needle[i] & 0xFF] = needle.length - 1 - i;
+        }
+
+        @Override
+        public int find(ByteBuffer buffer, int from, int to) {
+            int last = needle.length - 1;
+            // an empty pattern matches every line
+            if (last < 0)
+                return from < to ? from : -1;
+            byte lastByte = needle[last];
+            for (int i = from; i + last < to; ) {
+                byte current = buffer.get(i + last);
+                if (current == lastByte) {
+                    int j = last - 1;
+                    while (j >= 0 && buffer.get(i + j) == needle[j])
+                        j--;
+                    if (j < 0)
+                        return i;
+                }
+                i += shift[current & 0xFF];
+            }
+            return -1;
+        }
+    }
+
+    // decodes one line at a time, Pattern is thread safe and every call gets its own Matcher
+    private static final class RegexMatcher implements LineMatcher {
+        private final Pattern pattern;
+        private final Charset charset;
+
+        private RegexMatcher(Pattern pattern, Charset charset) {
+            this.pattern = pattern;
+            this.charset = charset;
+        }
+
+        @Override
+        public int find(ByteBuffer buffer, int from, int to) {
+            byte[] line = new byte[256];
+            Matcher regex = pattern.matcher("");
+            int start = from;
+            while (start < to) {
+                int end = indexOf(buffer, (byte) '\n', start, to);
+                if (end < 0)
+                    end = to;
+                int length = end - start;
+                if (length > 0 && buffer.get(end - 1) == '\r')
+                    length--;
+                if (line.length < length)
+                    line = new byte[Math.max(length, line.length * 2)];
+                buffer.get(start, line, 0, length);
+                if (regex.reset(new String(line, 0, length, charset)).find())
+                    return start;
+                start = end + 1;
+            }
+            return -1;
+        }
+    }
+}
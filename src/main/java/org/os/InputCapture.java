@@ -0,0 +1,138 @@
+package org.os;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+// cat > file / cat >> file: the input goes to the file while it is read instead of being collected first,
+// so memory stays at one buffer whatever the size of the input and what was typed is on disk if the
+// process dies. The buffer is written out when it is full, when the input has nothing more to give right
+// now (someone typing) and otherwise at least every flushMillis.
+// Text mode reads lines until 'stop' or the end of the input, raw mode copies the bytes as they are and
+// only looks for a line holding exactly 'stop' (\n or \r\n after it, or the end of the input)
+public class InputCapture {
+
+    public static final long DEFAULT_FLUSH_MILLIS = 1000;
+
+    private static final byte[] STOP = {'s', 't', 'o', 'p'};
+
+    // written is lines in text mode and bytes in raw mode, stopped is false when the input ended first
+    public record Result(long written, boolean stopped) {
+    }
+
+    private final long flushMillis;
+
+    public InputCapture(long flushMillis) {
+        this.flushMillis = Math.max(0, flushMillis);
+    }
+
+    // interval from -Dcli.cat.flush (milliseconds, 0 writes every line or block out at once)
+    public static InputCapture getDefault() {
+        return new InputCapture(Long.getLong("cli.cat.flush", DEFAULT_FLUSH_MILLIS));
+    }
+
+    // lines until 'stop', every line written with the system line separator
+    public Result captureLines(InputStream in, Path target, boolean append) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.defaultCharset()));
+        long[] lines = new long[1];
+        boolean[] stopped = new boolean[1];
+        Redirection.write(target, append, writer -> {
+            long lastFlush = System.nanoTime();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals("stop")) {
+                    stopped[0] = true;
+                    break;
+                }
+                writer.write(line);
+                writer.write(System.lineSeparator());
+                lines[0]++;
+                lastFlush = flushIfDue(writer, lastFlush, !reader.ready());
+            }
+        });
+        return new Result(lines[0], stopped[0]);
+    }
+
+    // bytes as they are until a 'stop' line or the end of the input, the 'stop' line is not written
+    public Result captureRaw(InputStream in, Path target, boolean append) throws IOException {
+        byte[] block = new byte[Redirection.BUFFER_SIZE];
+        ByteBuffer pending = ByteBuffer.allocate(Redirection.BUFFER_SIZE + STOP.length + 1);
+        // bytes of 'stop' (then 4 for "stop", 5 for "stop\r") matched at the start of the current line, or -1
+        int matched = -1;
+        boolean lineStart = true;
+        long bytes = 0;
+        CommandEvents.RedirectionEvent event = new CommandEvents.RedirectionEvent();
+        event.begin();
+        try (FileChannel channel = Redirection.open(target, append)) {
+            long lastFlush = System.nanoTime();
+            int read;
+            while ((read = in.read(block)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    byte b = block[i];
+                    if (matched >= 0) {
+                        if (matched < STOP.length && b == STOP[matched]) {
+                            matched++;
+                            continue;
+                        }
+                        if (matched == STOP.length && b == '\r') {
+                            matched++;
+                            continue;
+                        }
+                        if (matched >= STOP.length && b == '\n') {
+                            bytes += drain(pending, channel);
+                            Redirection.redirected(event, target, append, bytes);
+                            return new Result(bytes, true);
+                        }
+                        // not the sentinel after all, the held bytes are data
+                        pending.put(STOP, 0, Math.min(matched, STOP.length));
+                        if (matched > STOP.length)
+                            pending.put((byte) '\r');
+                        matched = -1;
+                    } else if (lineStart && b == STOP[0]) {
+                        matched = 1;
+                        lineStart = false;
+                        continue;
+                    }
+                    pending.put(b);
+                    lineStart = b == '\n';
+                    if (pending.position() >= Redirection.BUFFER_SIZE)
+                        bytes += drain(pending, channel);
+                }
+                if (in.available() == 0 || System.nanoTime() - lastFlush >= flushMillis * 1_000_000) {
+                    bytes += drain(pending, channel);
+                    lastFlush = System.nanoTime();
+                }
+            }
+            // 'stop' as the last line without a line break ends the input like with one
+            boolean stopped = matched >= STOP.length;
+            if (matched > 0 && !stopped)
+                pending.put(STOP, 0, matched);
+            bytes += drain(pending, channel);
+            Redirection.redirected(event, target, append, bytes);
+            return new Result(bytes, stopped);
+        }
+    }
+
+    private long flushIfDue(Writer writer, long lastFlush, boolean idle) throws IOException {
+        long now = System.nanoTime();
+        if (!idle && now - lastFlush < flushMillis * 1_000_000)
+            return lastFlush;
+        writer.flush();
+        return now;
+    }
+
+    private static int drain(ByteBuffer pending, FileChannel channel) throws IOException {
+        pending.flip();
+        int count = pending.remaining();
+        while (pending.hasRemaining())
+            channel.write(pending);
+        pending.clear();
+        return count;
+    }
+}
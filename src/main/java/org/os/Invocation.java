@@ -0,0 +1,41 @@
+package org.os;
+
+import java.util.List;
+import java.util.Set;
+
+// A command line as the command sees it: the tokens as typed and the options the registry recognised
+public class Invocation {
+
+    private final List<String> tokens;
+    private final Set<String> options;
+    private final SimpleCommand.Redirect redirect;
+
+    public Invocation(List<String> tokens, Set<String> options) {
+        this(tokens, options, null);
+    }
+
+    public Invocation(List<String> tokens, Set<String> options, SimpleCommand.Redirect redirect) {
+        this.tokens = tokens;
+        this.options = options;
+        this.redirect = redirect;
+    }
+
+    // every token including the command name, what the CommandLineInterpreter methods expect
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    // the > or >> of a command that writes the file itself (see CommandRegistry.handlesRedirection), else null
+    public SimpleCommand.Redirect getRedirect() {
+        return redirect;
+    }
+
+    // "a" for -a, "async" for --async, "parallel" for --parallel=4
+    public boolean hasOption(String option) {
+        return options.contains(option);
+    }
+
+    public Set<String> getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,48 @@
+package org.os;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// cmd1 | cmd2 | ... of a parsed line, run in the background when it ended with &
+public class Job {
+
+    private final List<SimpleCommand> stages;
+    private final boolean background;
+
+    public Job(List<SimpleCommand> stages, boolean background) {
+        this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+        this.background = background;
+    }
+
+    public List<SimpleCommand> getStages() {
+        return stages;
+    }
+
+    public boolean isBackground() {
+        return background;
+    }
+
+    public boolean isPipeline() {
+        return stages.size() > 1;
+    }
+
+    // the tokens of every stage with the redirections written back as words, for display and tests
+    public List<List<String>> stageTokens() {
+        List<List<String>> tokens = new ArrayList<>(stages.size());
+        for (SimpleCommand stage : stages)
+            tokens.add(stage.tokens());
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (SimpleCommand stage : stages) {
+            if (text.length() > 0)
+                text.append(" | ");
+            text.append(stage);
+        }
+        return background ? text.append(" &").toString() : text.toString();
+    }
+}
@@ -0,0 +1,166 @@
+package org.os;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+// cmd &: the job runs on a virtual thread with an interpreter of its own, a copy of the one that started it
+// (same directory at the time of the start, its own failure flag, no input) that writes into a SpillSink.
+// cd in a job changes nothing outside of it. The output waits in the buffer until wait or fg collects the job,
+// so it never gets mixed into the output of the commands typed in the meantime. Only the session that started
+// the jobs collects them, wait and fg in a job are refused, two jobs waiting for each other would never end
+public class JobControl {
+
+    //output of a job kept in memory, the rest waits in a temporary file (-Dcli.jobs.memory)
+    public static final int MEMORY_LIMIT = Integer.getInteger("cli.jobs.memory", 1024 * 1024);
+
+    public static final class BackgroundJob {
+        private final int id;
+        private final String command;
+        private final OutputSink.SpillSink output = OutputSink.spilling(MEMORY_LIMIT);
+        private final long start = System.nanoTime();
+        private volatile long end;
+        private volatile boolean failed;
+        private Thread thread;
+        //the Done line was shown at a prompt
+        private boolean notified;
+
+        private BackgroundJob(int id, String command) {
+            this.id = id;
+            this.command = command;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public boolean isDone() {
+            return end != 0;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        public long elapsedNanos() {
+            return (isDone() ? end : System.nanoTime()) - start;
+        }
+
+        public String status() {
+            return isDone() ? (failed ? "Exit 1" : "Done") : "Running";
+        }
+
+        private String describe() {
+            return String.format(Locale.ROOT, "[%d] %-8s %8.1fs  %s", id, status(), elapsedNanos() / 1e9, command);
+        }
+    }
+
+    private final TreeMap<Integer, BackgroundJob> jobs = new TreeMap<>();
+
+    // starts the job and returns right away, the registry runs it like a command typed at the prompt
+    public synchronized BackgroundJob start(Job job, CommandLineInterpreter cli, CommandRegistry registry) {
+        // like a shell, the numbers start over once every job is collected
+        int id = jobs.isEmpty() ? 1 : jobs.lastKey() + 1;
+        BackgroundJob background = new BackgroundJob(id, job.toString());
+        CommandLineInterpreter jobCli = cli.forJob(background.output);
+        Job foreground = new Job(job.getStages(), false);
+        background.thread = Thread.ofVirtual().name("job-" + id).unstarted(() -> {
+            try {
+                registry.execute(jobCli, foreground);
+            } catch (IOException | RuntimeException e) {
+                jobCli.reportError(job.getStages().get(0).getName() + ": " + e.getMessage());
+            } finally {
+                background.failed = jobCli.takeFailure();
+                background.end = System.nanoTime();
+            }
+        });
+        jobs.put(id, background);
+        background.thread.start();
+        return background;
+    }
+
+    public synchronized List<BackgroundJob> list() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    // jobs: every job not collected yet, running or finished
+    public void printJobs(OutputSink out) {
+        for (BackgroundJob job : list())
+            out.println(job.describe());
+    }
+
+    // [n] Done ... once for every job that finished since the last prompt, the output stays for wait and fg
+    public synchronized void notifyFinished(OutputSink out) {
+        for (BackgroundJob job : jobs.values()) {
+            if (job.isDone() && !job.notified) {
+                job.notified = true;
+                out.println(job.describe());
+            }
+        }
+    }
+
+    // wait [n ...]: every job given, or all of them, in the order of their numbers
+    public void waitFor(CommandLineInterpreter cli, List<String> ids) throws InterruptedException {
+        List<BackgroundJob> selected = new ArrayList<>();
+        if (ids.isEmpty()) {
+            selected.addAll(list());
+        } else {
+            for (String id : ids) {
+                BackgroundJob job = find(cli, "wait", id);
+                if (job != null)
+                    selected.add(job);
+            }
+        }
+        for (BackgroundJob job : selected)
+            collect(cli, job);
+    }
+
+    // fg [n]: the given job, or the last one started
+    public void foreground(CommandLineInterpreter cli, String id) throws InterruptedException {
+        BackgroundJob job;
+        if (id != null) {
+            job = find(cli, "fg", id);
+        } else {
+            synchronized (this) {
+                job = jobs.isEmpty() ? null : jobs.lastEntry().getValue();
+            }
+            if (job == null)
+                cli.reportError("fg: no current job");
+        }
+        if (job != null)
+            collect(cli, job);
+    }
+
+    private BackgroundJob find(CommandLineInterpreter cli, String command, String id) {
+        String number = id.startsWith("%") ? id.substring(1) : id;
+        BackgroundJob job = null;
+        try {
+            synchronized (this) {
+                job = jobs.get(Integer.parseInt(number));
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        if (job == null)
+            cli.reportError(command + ": " + id + ": no such job");
+        return job;
+    }
+
+    // joins the job, prints what it wrote and its status, and forgets it
+    private void collect(CommandLineInterpreter cli, BackgroundJob job) throws InterruptedException {
+        job.thread.join();
+        job.output.drainTo(cli.getOutput());
+        synchronized (this) {
+            jobs.remove(job.id);
+        }
+        if (job.failed)
+            cli.reportError(job.describe());
+        else
+            cli.getOutput().println(job.describe());
+    }
+}
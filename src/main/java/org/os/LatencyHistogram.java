@@ -0,0 +1,85 @@
+package org.os;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencies in nanoseconds counted in log-linear buckets like HdrHistogram: every power of two is cut into
+// 32 buckets, so a percentile is within about 3% of the real value from 1 ns to hundreds of years.
+// record() finds the bucket with a few shifts and increments one slot of a fixed array, nothing is allocated
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //one row of SUB_BUCKETS for the values below SUB_BUCKETS and one for every power of two above
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        total.increment();
+        sum.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    // the value below which the given fraction of the recorded values are, e.g. 0.99
+    public long percentile(double fraction) {
+        long count = count();
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestValue(i), max());
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        // the top SUB_BUCKET_BITS + 1 bits, between SUB_BUCKETS and 2 * SUB_BUCKETS
+        int mantissa = (int) (value >>> shift);
+        return (shift + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+    }
+
+    // biggest value that falls in the bucket
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
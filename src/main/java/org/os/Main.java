@@ -1,15 +1,61 @@
 package org.os;
 
 import java.io.BufferedReader;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Arrays;
-import java.util.List;
 import java.io.File;
-import java.util.Objects;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
 
 public class Main {
+
+    //read buffer of the script mode
+    private static final int SCRIPT_INPUT_BUFFER = 64 * 1024;
+
+    //where --jfr without a file name records
+    private static final String DEFAULT_RECORDING = "cli.jfr";
+
     public static void main(String[] args) throws IOException {
+        String script = null;
+        boolean batch = false;
+        ScriptRunner.ErrorPolicy errorPolicy = ScriptRunner.ErrorPolicy.CONTINUE;
+        OutputSink.FlushPolicy flushPolicy = null;
+        Path socket = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--script") && i + 1 < args.length) {
+                script = args[++i];
+            } else if (arg.equals("--batch")) {
+                batch = true;
+            } else if (arg.equals("--on-error") && i + 1 < args.length) {
+                errorPolicy = parseErrorPolicy(args[++i]);
+            } else if (arg.startsWith("--on-error=")) {
+                errorPolicy = parseErrorPolicy(arg.substring("--on-error=".length()));
+            } else if (arg.startsWith("--flush=")) {
+                flushPolicy = parseFlushPolicy(arg.substring("--flush=".length()));
+            } else if (arg.equals("--jfr")) {
+                startRecording(Path.of(DEFAULT_RECORDING));
+            } else if (arg.startsWith("--jfr=")) {
+                startRecording(Path.of(arg.substring("--jfr=".length())));
+            } else if (arg.equals("--daemon")) {
+                socket = Daemon.defaultSocket();
+            } else if (arg.startsWith("--daemon=")) {
+                socket = Path.of(arg.substring("--daemon=".length()));
+            } else {
+                usage();
+            }
+        }
+        if (socket != null) {
+            runDaemon(socket);
+            return;
+        }
+        if (script != null || batch) {
+            System.exit(runScript(script, errorPolicy, flushPolicy != null ? flushPolicy : OutputSink.FlushPolicy.SIZE));
+        }
 
         System.out.println("CLI \nType 'help' to see commands");
 
@@ -17,56 +63,159 @@ public class Main {
         BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
 
         // Initialize CLI with the current working directory
-        CommandLineInterpreter cli = new CommandLineInterpreter(new File(System.getProperty("user.dir")));
+        // everything a line prints comes out at once, before the next prompt
+        OutputSink console = OutputSink.console(flushPolicy != null ? flushPolicy : OutputSink.FlushPolicy.ON_PROMPT);
+        CommandEngine engine = CommandEngine.standard();
+        CommandLineInterpreter cli = engine.openSession(new File(System.getProperty("user.dir")), console);
+        // rm --async of an earlier run may have left things in the trash
+        Trash.getDefault().recover();
+        CommandHistory history = openHistory();
+        cli.getSession().setHistory(history);
 
         while (true) {
+            // jobs started with & that are done since the last prompt
+            cli.getJobs().notifyFinished(console);
+            console.beforePrompt();
             // Display prompt with current directory
             System.out.print(cli.getCurrentDirectory().getAbsolutePath() + " > ");
 
-            String input = reader.readLine().trim();
+            String input = reader.readLine();
+            // end of input (Ctrl+D) ends the CLI like exit
+            if (input == null) {
+                System.out.println();
+                break;
+            }
 
-            // Parse the input command
-            List<String> commandslist;
-            //["help" , "cd" ,"cd".."
+            // !n and the like are replaced by the line they recall, shown before it runs
+            if (history != null) {
+                String expanded;
+                try {
+                    expanded = history.expand(input);
+                } catch (ParseException e) {
+                    cli.reportError(e.getMessage());
+                    cli.takeFailure();
+                    continue;
+                }
+                if (!expanded.equals(input))
+                    console.println(expanded);
+                input = expanded;
+                history.add(input);
+            }
 
-            commandslist = Arrays.asList(input.split(" "));
+            // Handle commands, one that fails in an unexpected way does not end the session
+            boolean more;
+            try {
+                more = engine.execute(cli, input);
+            } catch (IOException | RuntimeException e) {
+                cli.reportError("cli: " + e.getMessage());
+                more = true;
+            }
+            if (!more) {
+                console.println("Exiting CLI...");
+                console.flush();
+                break;
+            }
+            cli.takeFailure();
+        }
+        if (history != null)
+            history.close();
+    }
 
+    // the history of earlier runs, the CLI works without one when the file cannot be used
+    private static CommandHistory openHistory() {
+        Path file = CommandHistory.defaultFile();
+        try {
+            return CommandHistory.open(file);
+        } catch (IOException e) {
+            System.err.println("cli: no history: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // --jfr: the default JDK settings (GC, safepoints, file I/O over 20 ms) plus every event of the CLI,
+    // written to the file when the process ends, whatever way it ends
+    private static void startRecording(Path file) throws IOException {
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException("cannot read the default JFR settings", e);
+        }
+        recording.setName("cli");
+        for (String event : new String[]{"org.os.Command", "org.os.DirectoryListing", "org.os.FileRead",
+                "org.os.FileWrite", "org.os.Redirection"})
+            recording.enable(event).withoutThreshold();
+        recording.setDestination(file);
+        recording.setDumpOnExit(true);
+        recording.start();
+    }
 
-            String command = commandslist.get(0);
+    // stop or continue, anything else is a usage error rather than a silent continue
+    private static ScriptRunner.ErrorPolicy parseErrorPolicy(String policy) {
+        if (policy.equalsIgnoreCase("stop"))
+            return ScriptRunner.ErrorPolicy.STOP;
+        if (policy.equalsIgnoreCase("continue"))
+            return ScriptRunner.ErrorPolicy.CONTINUE;
+        System.err.println("cli: --on-error: unknown policy '" + policy + "', expected stop or continue");
+        usage();
+        return null;
+    }
 
-            // Handle commands
-            if (command.equalsIgnoreCase("exit")) {
-                System.out.println("Exiting CLI...");
-                break;
-            } else if (command.equalsIgnoreCase("help")) {
-                cli.displayHelp();
-            } else if (command.equals("cd")) {
-                cli.changeDirectory(commandslist);
-            } else if (command.equals("pwd")) {
-                cli.printWorkingDirectory();
-            } else if (command.equals("ls")) {
-                if (commandslist.size()>1 && Objects.equals(commandslist.get(1), "-a"))
-                    cli.printAllListFiles(commandslist);
-                else if (commandslist.size()>1 && Objects.equals(commandslist.get(1), "-r"))
-                    cli.printRevListFiles(commandslist);
-                else
-                    cli.printListFiles(commandslist);
-            } else if (command.equals("mkdir")) {
-                cli.mkdir(commandslist);
-            } else if (command.equals("rmdir")) {
-                cli.rmdir(commandslist);
-            } else if (command.equals("touch")) {
-                cli.touch(commandslist);
-            } else if (command.equals("mv")) {
-                cli.mv(commandslist);
-            } else if (command.equals("rm")) {
-                cli.rm(commandslist);
-            } else if (command.equals("cat")) {
-                cli.cat(commandslist);
-            } else {
-                // Execute other system commands
-                cli.errorHandler(command);
+    private static void usage() {
+        System.err.println("Usage: [--script file | --batch | --daemon[=socket]] [--on-error stop|continue] [--flush=write|size|command|prompt] [--jfr[=file]]");
+        System.exit(2);
+    }
+
+    private static OutputSink.FlushPolicy parseFlushPolicy(String policy) {
+        return switch (policy.toLowerCase()) {
+            case "write" -> OutputSink.FlushPolicy.EVERY_WRITE;
+            case "command" -> OutputSink.FlushPolicy.PER_COMMAND;
+            case "prompt" -> OutputSink.FlushPolicy.ON_PROMPT;
+            default -> OutputSink.FlushPolicy.SIZE;
+        };
+    }
+
+    // --daemon: serve DaemonClient until the process is killed, the socket file goes with it
+    private static void runDaemon(Path socket) throws IOException {
+        Daemon daemon = new Daemon(CommandEngine.standard(), socket);
+        try {
+            daemon.bind();
+        } catch (IOException e) {
+            System.err.println("cli: cannot listen on " + socket + ": " + e.getMessage());
+            System.exit(2);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                // the socket file stays, the next daemon replaces it
             }
+        }, "daemon-exit"));
+        Trash.getDefault().recover();
+        System.err.println("cli: daemon listening on " + socket);
+        daemon.serve();
+    }
+
+    // --script file or --batch (stdin): no prompt, buffered output, summary on stderr, exit code 1 if a command failed.
+    // The lines run through the engine and a session like the REPL ones, history shows what was typed before
+    private static int runScript(String script, ScriptRunner.ErrorPolicy errorPolicy, OutputSink.FlushPolicy flushPolicy) throws IOException {
+        OutputSink console = OutputSink.console(flushPolicy);
+        CommandEngine engine = CommandEngine.standard();
+        CommandLineInterpreter cli = engine.openSession(new File(System.getProperty("user.dir")), console);
+        ScriptRunner runner = new ScriptRunner(cli, engine, errorPolicy);
+        Trash.getDefault().recover();
+        CommandHistory history = openHistory();
+        cli.getSession().setHistory(history);
+
+        ScriptRunner.Result result;
+        try (BufferedReader lines = new BufferedReader(script != null ? new FileReader(script) : new InputStreamReader(System.in), SCRIPT_INPUT_BUFFER)) {
+            result = runner.run(lines);
+        } finally {
+            console.flush();
+            if (history != null)
+                history.close();
         }
+        System.err.println(result.summary());
+        return result.failures() > 0 ? 1 : 0;
     }
 }
@@ -0,0 +1,438 @@
+package org.os;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Where the output of the commands goes: the console, a file, a pipe or memory.
+// Everything is collected in one buffer and handed to the target when the FlushPolicy says so,
+// a command printing thousands of lines pays one flush instead of one synchronized println per line.
+// Like PrintStream the print methods do not throw, a failed write is remembered for checkError()
+public abstract class OutputSink implements Flushable, Closeable {
+
+    public enum FlushPolicy {
+        // after every print, what System.out.println does
+        EVERY_WRITE,
+        // only when the buffer is full and on close
+        SIZE,
+        // at the end of every command
+        PER_COMMAND,
+        // before the prompt is shown, a line with several commands is flushed once
+        ON_PROMPT
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private final FlushPolicy flushPolicy;
+    private final Charset charset;
+    private final byte[] buffer;
+    private int count;
+    private boolean error;
+    //everything handed to the sink, for CommandStats
+    private long written;
+
+    private final OutputStream stream = new OutputStream() {
+        @Override
+        public void write(int b) {
+            OutputSink.this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            OutputSink.this.write(b, off, len);
+        }
+
+        // the flush of a writer or stream wrapped around the sink, follows the policy
+        @Override
+        public void flush() {
+            afterWrite();
+        }
+    };
+
+    protected OutputSink(FlushPolicy flushPolicy, Charset charset, int bufferSize) {
+        this.flushPolicy = flushPolicy;
+        this.charset = charset;
+        this.buffer = new byte[bufferSize];
+    }
+
+    // System.out as it is at the time of the flush, so code that swaps System.out keeps working
+    public static OutputSink console(FlushPolicy flushPolicy) {
+        return new ConsoleSink(flushPolicy);
+    }
+
+    public static OutputSink file(Path path, boolean append, FlushPolicy flushPolicy) throws IOException {
+        return new FileSink(path, append, flushPolicy);
+    }
+
+    // any stream, e.g. the writing end of a BoundedPipe. Closing the sink closes the stream
+    public static OutputSink stream(OutputStream target, FlushPolicy flushPolicy) {
+        return new StreamSink(target, flushPolicy);
+    }
+
+    public static MemorySink memory() {
+        return new MemorySink();
+    }
+
+    // memory up to memoryLimit bytes, a temporary file after that
+    public static SpillSink spilling(int memoryLimit) {
+        return new SpillSink(memoryLimit);
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    public Charset charset() {
+        return charset;
+    }
+
+    public void print(String text) {
+        byte[] bytes = text.getBytes(charset);
+        append(bytes, 0, bytes.length);
+        afterWrite();
+    }
+
+    public void println(String text) {
+        byte[] bytes = text.getBytes(charset);
+        append(bytes, 0, bytes.length);
+        append(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+        afterWrite();
+    }
+
+    public void println(Object value) {
+        println(String.valueOf(value));
+    }
+
+    public void println() {
+        append(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+        afterWrite();
+    }
+
+    public void write(byte[] bytes, int off, int len) {
+        append(bytes, off, len);
+        afterWrite();
+    }
+
+    // raw bytes view, for InputStream.transferTo and the like. Its flush() follows the policy
+    public OutputStream asStream() {
+        return stream;
+    }
+
+    // buffered writer in the charset of the sink, its flush() follows the policy
+    public Writer asWriter() {
+        return new BufferedWriter(new OutputStreamWriter(stream, charset));
+    }
+
+    // copy part of a file without decoding it, straight from the kernel when the target allows it.
+    // Holds the sink for the whole copy, a print of another stage cannot land in the middle of it
+    public synchronized void transferFrom(FileChannel source, long position, long count) {
+        if (error)
+            return;
+        flush();
+        try {
+            WritableByteChannel target = channel();
+            long end = position + count;
+            while (position < end) {
+                long sent = source.transferTo(position, end - position, target);
+                if (sent <= 0)
+                    break;
+                position += sent;
+                written += sent;
+            }
+            flushTarget();
+        } catch (IOException e) {
+            error = true;
+        }
+    }
+
+    // everything buffered goes to the target now, whatever the policy
+    @Override
+    public synchronized void flush() {
+        try {
+            if (count > 0) {
+                writeOut(buffer, 0, count);
+                count = 0;
+            }
+            flushTarget();
+        } catch (IOException e) {
+            count = 0;
+            error = true;
+        }
+    }
+
+    public void commandFinished() {
+        if (flushPolicy == FlushPolicy.PER_COMMAND)
+            flush();
+    }
+
+    public void beforePrompt() {
+        if (flushPolicy != FlushPolicy.SIZE)
+            flush();
+    }
+
+    // flushes and tells whether a write failed, e.g. because nobody reads the pipe anymore
+    public boolean checkError() {
+        flush();
+        synchronized (this) {
+            return error;
+        }
+    }
+
+    public synchronized long bytesWritten() {
+        return written;
+    }
+
+    // whether a write failed so far, without flushing, cheap enough to ask for every line
+    public synchronized boolean hasError() {
+        return error;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    protected abstract void writeOut(byte[] bytes, int off, int len) throws IOException;
+
+    protected void flushTarget() throws IOException {
+    }
+
+    // channel used by transferFrom, only called after a flush
+    protected WritableByteChannel channel() throws IOException {
+        return Channels.newChannel(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                writeOut(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                writeOut(b, off, len);
+            }
+        });
+    }
+
+    private synchronized void append(byte[] bytes, int off, int len) {
+        if (error)
+            return;
+        written += len;
+        try {
+            // bigger than the buffer, no point in copying it
+            if (len >= buffer.length) {
+                if (count > 0) {
+                    writeOut(buffer, 0, count);
+                    count = 0;
+                }
+                writeOut(bytes, off, len);
+                return;
+            }
+            if (len > buffer.length - count) {
+                writeOut(buffer, 0, count);
+                count = 0;
+            }
+            System.arraycopy(bytes, off, buffer, count, len);
+            count += len;
+        } catch (IOException e) {
+            count = 0;
+            error = true;
+        }
+    }
+
+    private void afterWrite() {
+        if (flushPolicy == FlushPolicy.EVERY_WRITE)
+            flush();
+    }
+
+    public static class ConsoleSink extends OutputSink {
+
+        //stdout of the process, kept to know when System.out has not been replaced
+        private static final PrintStream STDOUT = System.out;
+        private static final WritableByteChannel STDOUT_CHANNEL = new FileOutputStream(FileDescriptor.out).getChannel();
+
+        private ConsoleSink(FlushPolicy flushPolicy) {
+            super(flushPolicy, System.out.charset(), flushPolicy == FlushPolicy.EVERY_WRITE ? 8 * 1024 : DEFAULT_BUFFER_SIZE);
+        }
+
+        @Override
+        protected void writeOut(byte[] bytes, int off, int len) {
+            System.out.write(bytes, off, len);
+        }
+
+        @Override
+        protected void flushTarget() {
+            System.out.flush();
+        }
+
+        // the real stdout can take the bytes straight from the kernel (sendfile)
+        @Override
+        protected WritableByteChannel channel() throws IOException {
+            if (System.out == STDOUT)
+                return STDOUT_CHANNEL;
+            return Channels.newChannel(System.out);
+        }
+    }
+
+    public static class FileSink extends OutputSink {
+
+        private final FileChannel channel;
+
+        private FileSink(Path path, boolean append, FlushPolicy flushPolicy) throws IOException {
+            super(flushPolicy, Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+            this.channel = Redirection.open(path, append);
+        }
+
+        @Override
+        protected void writeOut(byte[] bytes, int off, int len) throws IOException {
+            ByteBuffer data = ByteBuffer.wrap(bytes, off, len);
+            while (data.hasRemaining())
+                channel.write(data);
+        }
+
+        // file to file copies stay in the kernel
+        @Override
+        protected WritableByteChannel channel() {
+            return channel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public static class StreamSink extends OutputSink {
+
+        private final OutputStream target;
+
+        private StreamSink(OutputStream target, FlushPolicy flushPolicy) {
+            super(flushPolicy, Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+            this.target = target;
+        }
+
+        @Override
+        protected void writeOut(byte[] bytes, int off, int len) throws IOException {
+            target.write(bytes, off, len);
+        }
+
+        @Override
+        protected void flushTarget() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                target.close();
+            }
+        }
+    }
+
+    // keeps everything, for tests and for capturing the output of a command
+    public static class MemorySink extends OutputSink {
+
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        private MemorySink() {
+            super(FlushPolicy.SIZE, Charset.defaultCharset(), 8 * 1024);
+        }
+
+        @Override
+        protected synchronized void writeOut(byte[] bytes, int off, int len) {
+            content.write(bytes, off, len);
+        }
+
+        public byte[] toByteArray() {
+            flush();
+            synchronized (this) {
+                return content.toByteArray();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new String(toByteArray(), charset());
+        }
+    }
+
+    // What a background job writes until wait or fg collects it: in memory while it is small, then in a
+    // temporary file, so cat big & does not take its size in heap. The file is gone once drained
+    public static class SpillSink extends OutputSink {
+
+        private final int memoryLimit;
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private FileChannel spill;
+
+        private SpillSink(int memoryLimit) {
+            super(FlushPolicy.SIZE, Charset.defaultCharset(), 8 * 1024);
+            this.memoryLimit = memoryLimit;
+        }
+
+        @Override
+        protected synchronized void writeOut(byte[] bytes, int off, int len) throws IOException {
+            if (spill == null && content.size() + len <= memoryLimit) {
+                content.write(bytes, off, len);
+                return;
+            }
+            if (spill == null) {
+                Path file = Files.createTempFile("cli-job", ".out");
+                file.toFile().deleteOnExit();
+                spill = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                writeFully(ByteBuffer.wrap(content.toByteArray()));
+                content.reset();
+            }
+            writeFully(ByteBuffer.wrap(bytes, off, len));
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining())
+                spill.write(bytes);
+        }
+
+        // whether the output went over the memory limit
+        public synchronized boolean isSpilled() {
+            return spill != null;
+        }
+
+        // everything written so far goes to the target, then the memory and the file are freed
+        public void drainTo(OutputSink target) {
+            flush();
+            synchronized (this) {
+                if (spill == null) {
+                    target.write(content.toByteArray(), 0, content.size());
+                    content.reset();
+                    return;
+                }
+                try (FileChannel file = spill) {
+                    target.transferFrom(file, 0, file.size());
+                } catch (IOException e) {
+                    target.println("cannot read the output back: " + e.getMessage());
+                }
+                spill = null;
+            }
+        }
+    }
+}
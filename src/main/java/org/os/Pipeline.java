@@ -0,0 +1,114 @@
+package org.os;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// Runs cmd1 | cmd2 | cmd3 with every stage on its own thread at the same time.
+// Stages are connected by BoundedPipes, so the output of a command is consumed while it is produced
+// and never exists as one big String, a fast producer waits for a slow consumer
+public class Pipeline {
+
+    // runs one stage with the given interpreter, e.g. a SimpleCommand of a parsed Job
+    public interface StageRunner<T> {
+        void run(CommandLineInterpreter cli, T stage) throws IOException;
+    }
+
+    // runs one command with the given interpreter, e.g. the dispatch of Main
+    public interface CommandRunner extends StageRunner<List<String>> {
+    }
+
+    // ["cat", "a", "|", "wc", "-l"] -> [["cat", "a"], ["wc", "-l"]]
+    public static List<List<String>> split(List<String> commandTokens) {
+        List<List<String>> stages = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= commandTokens.size(); i++) {
+            if (i == commandTokens.size() || commandTokens.get(i).equals("|")) {
+                stages.add(commandTokens.subList(start, i));
+                start = i + 1;
+            }
+        }
+        return stages;
+    }
+
+    // the first stage reads the input of cli and the last one writes its output
+    public static void run(CommandLineInterpreter cli, List<List<String>> stages, CommandRunner runner) throws IOException {
+        for (List<String> stage : stages) {
+            if (stage.isEmpty())
+                throw new IOException("syntax error near |");
+        }
+        run(cli, stages, stage -> stage.get(0), runner);
+    }
+
+    // the same for stages of any kind, name gives the command of a stage for its thread
+    public static <T> void run(CommandLineInterpreter cli, List<T> stages, Function<T, String> name, StageRunner<T> runner) throws IOException {
+        List<Thread> threads = new ArrayList<>();
+        // the first failure of a stage, whatever it is, for the caller
+        Throwable[] failure = new Throwable[1];
+        InputStream stageInput = null;
+        for (int i = 0; i < stages.size() - 1; i++) {
+            BoundedPipe pipe = new BoundedPipe();
+            OutputSink stageOutput = OutputSink.stream(pipe.sink(), OutputSink.FlushPolicy.SIZE);
+            CommandLineInterpreter stageCli = cli.withStreams(stageInput, stageOutput);
+            InputStream consumed = stageInput;
+            T stage = stages.get(i);
+            Thread thread = new Thread(() -> {
+                try {
+                    runner.run(stageCli, stage);
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        if (failure[0] == null && !"Broken pipe".equals(e.getMessage()))
+                            failure[0] = e;
+                    }
+                } finally {
+                    // end of input for the next stage, and the previous one can stop writing,
+                    // even when the stage ended with an exception
+                    try {
+                        closeQuietly(stageOutput);
+                    } finally {
+                        closeQuietly(consumed);
+                    }
+                }
+            }, "pipeline-" + name.apply(stage));
+            thread.start();
+            threads.add(thread);
+            stageInput = pipe.source();
+        }
+
+        // the last stage runs on the calling thread
+        try {
+            runner.run(cli.withStreams(stageInput, null), stages.get(stages.size() - 1));
+        } finally {
+            closeQuietly(stageInput);
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (failure[0] instanceof IOException e)
+            throw e;
+        if (failure[0] instanceof RuntimeException e)
+            throw e;
+        if (failure[0] instanceof Error e)
+            throw e;
+        if (failure[0] != null)
+            throw new IOException(failure[0]);
+    }
+
+    private static void closeQuietly(Closeable stream) {
+        if (stream == null)
+            return;
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // nothing left to read anyway
+        }
+    }
+}
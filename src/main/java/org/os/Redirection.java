@@ -0,0 +1,193 @@
+package org.os;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// > and >>: the target is opened once with FileChannel CREATE and APPEND or TRUNCATE_EXISTING, there is no
+// exists() / touch round trip before it. Text is encoded chunk by chunk into a direct ByteBuffer taken from a
+// small shared pool, so an output written by a producer (a listing, a file) never exists as one String or one
+// byte[]. Commands run on virtual threads, a buffer per thread would be a new off-heap allocation per command
+public final class Redirection {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    //direct buffers there will ever be, about one per carrier thread
+    private static final int DIRECT_BUFFERS = Runtime.getRuntime().availableProcessors();
+
+    //direct buffers not held by a writer, and how many were allocated so far
+    private static final BlockingQueue<ByteBuffer> BUFFERS = new ArrayBlockingQueue<>(DIRECT_BUFFERS);
+    private static final AtomicInteger ALLOCATED = new AtomicInteger();
+
+    // writes the output of a command to the writer it is given
+    public interface Producer {
+        void writeTo(Writer target) throws IOException;
+    }
+
+    private Redirection() {
+    }
+
+    // every redirection target gets the .txt extension, ls > out writes out.txt
+    public static Path target(File directory, String filename) {
+        return directory.toPath().resolve(filename + ".txt");
+    }
+
+    // ls > logs/out creates logs first, like the touch the redirections used to go through
+    public static FileChannel open(Path target, boolean append) throws IOException {
+        if (target.getParent() != null)
+            Files.createDirectories(target.getParent());
+        return FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public static void write(Path target, boolean append, Producer producer) throws IOException {
+        CommandEvents.RedirectionEvent event = new CommandEvents.RedirectionEvent();
+        event.begin();
+        ChannelWriter writer = new ChannelWriter(open(target, append), Charset.defaultCharset());
+        try (writer) {
+            producer.writeTo(writer);
+        } finally {
+            redirected(event, target, append, writer.bytesWritten());
+        }
+    }
+
+    // the event of a redirection, from the open of the target until now
+    public static void redirected(CommandEvents.RedirectionEvent event, Path target, boolean append, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = target.toString();
+            event.append = append;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    public static void write(Path target, boolean append, String text) throws IOException {
+        write(target, append, writer -> writer.write(text));
+    }
+
+    // Writer on a channel, closing it closes the channel
+    public static final class ChannelWriter extends Writer {
+
+        private final FileChannel channel;
+        private final CharsetEncoder encoder;
+        private final CharBuffer chars = CharBuffer.allocate(8 * 1024);
+        private ByteBuffer bytes;
+        private long written;
+
+        public ChannelWriter(FileChannel channel, Charset charset) {
+            this.channel = channel;
+            this.encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.bytes = takeBuffer();
+        }
+
+        @Override
+        public void write(char[] text, int off, int len) throws IOException {
+            ensureOpen();
+            while (len > 0) {
+                int count = Math.min(len, chars.remaining());
+                chars.put(text, off, count);
+                off += count;
+                len -= count;
+                if (!chars.hasRemaining())
+                    encode(false);
+            }
+        }
+
+        @Override
+        public void write(String text, int off, int len) throws IOException {
+            ensureOpen();
+            while (len > 0) {
+                int count = Math.min(len, chars.remaining());
+                chars.put(text, off, off + count);
+                off += count;
+                len -= count;
+                if (!chars.hasRemaining())
+                    encode(false);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            ensureOpen();
+            encode(false);
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (bytes == null)
+                return;
+            try {
+                encode(true);
+                while (encoder.flush(bytes).isOverflow())
+                    drain();
+                drain();
+            } finally {
+                // heap buffers are left to the collector
+                if (bytes.isDirect())
+                    BUFFERS.offer(bytes);
+                bytes = null;
+                channel.close();
+            }
+        }
+
+        // moves the buffered chars into the byte buffer, writing it out whenever it is full
+        private void encode(boolean endOfInput) throws IOException {
+            chars.flip();
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                if (result.isOverflow())
+                    drain();
+                else if (result.isUnderflow())
+                    break;
+                else
+                    result.throwException();
+            }
+            // half of a surrogate pair waits for the other half
+            chars.compact();
+        }
+
+        public long bytesWritten() {
+            return written;
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            written += bytes.remaining();
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+            bytes.clear();
+        }
+
+        // a pooled buffer, a new direct one until there are DIRECT_BUFFERS, then a heap buffer
+        private static ByteBuffer takeBuffer() {
+            ByteBuffer buffer = BUFFERS.poll();
+            if (buffer != null)
+                return buffer.clear();
+            if (ALLOCATED.getAndUpdate(count -> Math.min(count + 1, DIRECT_BUFFERS)) < DIRECT_BUFFERS)
+                return ByteBuffer.allocateDirect(BUFFER_SIZE);
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        private void ensureOpen() throws IOException {
+            if (bytes == null)
+                throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.os;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+
+// Non interactive execution of a script (or of stdin): no prompt, one command line after the other.
+// A command fails when it reports an error, throws, or its line does not parse.
+// With STOP the first failure ends the run, with CONTINUE every line is run and failures are counted
+public class ScriptRunner {
+
+    public enum ErrorPolicy { STOP, CONTINUE }
+
+    // what a run did, for the summary and the exit code
+    public record Result(long commands, long failures, long nanos, boolean stopped) {
+
+        public double commandsPerSecond() {
+            return nanos == 0 ? 0 : commands * 1_000_000_000.0 / nanos;
+        }
+
+        public String summary() {
+            return String.format("%d commands in %.3f s (%.0f commands/s), %d failed%s",
+                    commands, nanos / 1_000_000_000.0, commandsPerSecond(), failures, stopped ? ", stopped at first failure" : "");
+        }
+    }
+
+    private final CommandLineInterpreter cli;
+    private final CommandEngine engine;
+    private final ErrorPolicy errorPolicy;
+
+    // the lines run in the session of cli, through the engine shared with the REPL and the daemon
+    public ScriptRunner(CommandLineInterpreter cli, CommandEngine engine, ErrorPolicy errorPolicy) {
+        this.cli = cli;
+        this.engine = engine;
+        this.errorPolicy = errorPolicy;
+    }
+
+    // runs until the end of the input or exit, blank lines and lines starting with # are skipped
+    public Result run(BufferedReader lines) throws IOException {
+        long commands = 0;
+        long failures = 0;
+        boolean stopped = false;
+        long start = System.nanoTime();
+        String line;
+        loop:
+        while ((line = lines.readLine()) != null) {
+            if (line.isBlank() || line.stripLeading().startsWith("#"))
+                continue;
+            List<Job> jobs;
+            try {
+                jobs = engine.parse(cli, line);
+            } catch (ParseException e) {
+                cli.reportError(e.getMessage() + ": " + line);
+                jobs = List.of();
+            }
+            for (Job job : jobs) {
+                if (CommandRegistry.isExit(job.getStages().get(0).getName()))
+                    break loop;
+                commands++;
+                try {
+                    engine.execute(cli, job);
+                } catch (IOException | RuntimeException e) {
+                    cli.reportError(job.getStages().get(0).getName() + ": " + e.getMessage());
+                }
+            }
+            if (cli.takeFailure()) {
+                failures++;
+                if (errorPolicy == ErrorPolicy.STOP) {
+                    stopped = true;
+                    break;
+                }
+            }
+        }
+        return new Result(commands, failures, System.nanoTime() - start, stopped);
+    }
+}
@@ -0,0 +1,174 @@
+package org.os;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Everything one session may change: working directory, environment, streams, failure flag and jobs.
+// The commands and the caches are in the CommandEngine, shared by every session of the process, so a
+// session costs these few fields and any number of them run at the same time, each on its own thread
+public class Session {
+
+    //the directory that you open the CLI from, changed by cd
+    private volatile File currentDirectory;
+
+    //export NAME=value, shared with the pipeline stages of this session, copied for a job
+    private final Map<String, String> environment;
+
+    //input of the commands, null means the console (System.in at the time of use)
+    private final InputStream input;
+
+    //where the commands write, flushed according to its policy
+    private final OutputSink output;
+
+    //set by reportError, shared with the pipeline stages of this session
+    private final AtomicBoolean failed;
+
+    //jobs started with &, shared with the stages and the jobs of this session
+    private final JobControl jobs;
+
+    //the lines typed in this session, a parser is not thread safe
+    private CommandParser parser;
+
+    //true in a background job and its pipeline stages, where wait and fg are refused
+    private boolean background;
+
+    //what history shows and !n recalls, null in a session that keeps none (daemon clients). Scripts only read it
+    private volatile CommandHistory history;
+
+    //what the commands run with this session read, listed and reported, see CommandStats.
+    //Not shared with the copies, every pipeline stage is counted on its own
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public Session(File initialDirectory, OutputSink output) {
+        this(initialDirectory, null, output);
+    }
+
+    // input null reads the console
+    public Session(File initialDirectory, InputStream input, OutputSink output) {
+        this(initialDirectory, new ConcurrentHashMap<>(), input, output, new AtomicBoolean(), new JobControl());
+    }
+
+    private Session(File initialDirectory, Map<String, String> environment, InputStream input, OutputSink output,
+                    AtomicBoolean failed, JobControl jobs) {
+        this.currentDirectory = initialDirectory;
+        this.environment = environment;
+        this.input = input;
+        this.output = output;
+        this.failed = failed;
+        this.jobs = jobs;
+    }
+
+    // same directory, other streams (null keeps the current one), e.g. one stage of a pipeline.
+    // cd in it does not change the directory of this one
+    public Session withStreams(InputStream input, OutputSink output) {
+        Session session = new Session(currentDirectory, environment, input != null ? input : this.input,
+                output != null ? output : this.output, failed, jobs);
+        session.history = history;
+        session.background = background;
+        return session;
+    }
+
+    // a background job: nothing to read, a copy of the environment and a failure flag of its own
+    public Session forJob(OutputSink output) {
+        Session session = new Session(currentDirectory, new ConcurrentHashMap<>(environment), InputStream.nullInputStream(), output,
+                new AtomicBoolean(), jobs);
+        session.history = history;
+        session.background = true;
+        return session;
+    }
+
+    public File getCurrentDirectory() {
+        return currentDirectory;
+    }
+
+    public void setCurrentDirectory(File directory) {
+        this.currentDirectory = directory;
+    }
+
+    public String getVariable(String name) {
+        return environment.get(name);
+    }
+
+    public void setVariable(String name, String value) {
+        environment.put(name, value);
+    }
+
+    // sorted by name, for env
+    public Map<String, String> getEnvironment() {
+        return new TreeMap<>(environment);
+    }
+
+    public InputStream getInput() {
+        return input != null ? input : System.in;
+    }
+
+    // whether the input is a pipe or a file rather than the console
+    public boolean hasRedirectedInput() {
+        return input != null;
+    }
+
+    public OutputSink getOutput() {
+        return output;
+    }
+
+    public void markFailed() {
+        errors.incrementAndGet();
+        failed.set(true);
+    }
+
+    // whether a command reported an error since the last call, and start over
+    public boolean takeFailure() {
+        return failed.getAndSet(false);
+    }
+
+    public void countRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    public void countEntries(long count) {
+        entries.addAndGet(count);
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getEntries() {
+        return entries.get();
+    }
+
+    // errors reported so far, unlike the failure flag this is never taken back
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public boolean isBackground() {
+        return background;
+    }
+
+    public JobControl getJobs() {
+        return jobs;
+    }
+
+    // set before the first command, the copies for pipeline stages and jobs take it from here
+    public CommandHistory getHistory() {
+        return history;
+    }
+
+    public void setHistory(CommandHistory history) {
+        this.history = history;
+    }
+
+    public CommandParser getParser() {
+        if (parser == null)
+            parser = new CommandParser();
+        return parser;
+    }
+}
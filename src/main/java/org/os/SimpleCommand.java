@@ -0,0 +1,62 @@
+package org.os;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// One command of a parsed line: its words and an optional > / >> redirection
+public class SimpleCommand {
+
+    // > target or >> target, the name as the lexer gave it
+    public record Redirect(String target, boolean append) {
+    }
+
+    private final List<String> words;
+    private final String redirectTarget;
+    private final boolean append;
+
+    public SimpleCommand(List<String> words, String redirectTarget, boolean append) {
+        this.words = Collections.unmodifiableList(new ArrayList<>(words));
+        this.redirectTarget = redirectTarget;
+        this.append = append;
+    }
+
+    public String getName() {
+        return words.get(0);
+    }
+
+    public List<String> getWords() {
+        return words;
+    }
+
+    // null when the output is not redirected
+    public String getRedirectTarget() {
+        return redirectTarget;
+    }
+
+    public boolean isAppend() {
+        return append;
+    }
+
+    // null when the output is not redirected. Commands get it like this, never as > and a name among their words,
+    // so a quoted '>' stays a word
+    public Redirect redirect() {
+        return redirectTarget == null ? null : new Redirect(redirectTarget, append);
+    }
+
+    // words followed by the redirection, for display: a quoted '>' would read as a redirection again
+    public List<String> tokens() {
+        if (redirectTarget == null)
+            return words;
+        List<String> tokens = new ArrayList<>(words.size() + 2);
+        tokens.addAll(words);
+        tokens.add(append ? ">>" : ">");
+        tokens.add(redirectTarget);
+        return Collections.unmodifiableList(tokens);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", tokens());
+    }
+}
@@ -0,0 +1,263 @@
+package org.os;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// rm --async: the target is renamed into a hidden .cli-trash directory on the same file system, which is one
+// atomic rename whatever the size of the tree, and a background thread deletes it later at a bounded rate
+// (entries per second) so the reclaiming does not starve the commands of the user of disk I/O.
+// The trash directories in use are remembered in a small file, what was still pending when the process
+// ended is picked up again by recover() on the next start
+public class Trash {
+
+    public static final String DIRECTORY_NAME = ".cli-trash";
+
+    private static Trash defaultTrash;
+
+    //one trash directory per line
+    private final Path rootsFile;
+    //its trash is used for every target on the same file system, the home directory by default
+    private final Path preferredDirectory;
+    private final long entriesPerSecond;
+
+    private final Set<Path> trashDirectories = new LinkedHashSet<>();
+    private final ArrayDeque<Path> pending = new ArrayDeque<>();
+    private Path reclaiming;
+    private Thread reclaimer;
+    private boolean rootsLoaded;
+    private long sequence;
+
+    private final AtomicLong reclaimedItems = new AtomicLong();
+    private final AtomicLong reclaimedEntries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    //when the reclaimer may delete the next entry
+    private long nextSlot;
+
+    public Trash(Path rootsFile, Path preferredDirectory, long entriesPerSecond) {
+        this.rootsFile = rootsFile;
+        this.preferredDirectory = preferredDirectory;
+        this.entriesPerSecond = Math.max(1, entriesPerSecond);
+    }
+
+    // the trash of this process, its list of trash directories is kept in the home directory
+    public static synchronized Trash getDefault() {
+        if (defaultTrash == null) {
+            Path home = Paths.get(System.getProperty("user.home"));
+            String rootsFile = System.getProperty("cli.trash.roots");
+            defaultTrash = new Trash(rootsFile != null ? Paths.get(rootsFile) : home.resolve(".cli-trash-roots"), home,
+                    Long.getLong("cli.trash.rate", 10_000));
+        }
+        return defaultTrash;
+    }
+
+    // renames the target into the trash and queues it, returns where it went.
+    // AtomicMoveNotSupportedException when it cannot be renamed, then the caller deletes it the slow way
+    public Path moveToTrash(Path target) throws IOException {
+        target = target.toAbsolutePath().normalize();
+        Path trashDirectory = trashDirectoryFor(target);
+        if (target.startsWith(trashDirectory) || trashDirectory.startsWith(target))
+            throw new IOException("cannot move " + target + " to the trash in " + trashDirectory);
+        createTrashDirectory(trashDirectory);
+        Path item;
+        synchronized (this) {
+            item = trashDirectory.resolve(System.currentTimeMillis() + "-" + (++sequence) + "-" + target.getFileName());
+        }
+        Files.move(target, item, StandardCopyOption.ATOMIC_MOVE);
+        enqueue(item);
+        return item;
+    }
+
+    // queue what earlier runs left in the trash directories
+    public synchronized int recover() {
+        loadRoots();
+        int recovered = 0;
+        for (Path trashDirectory : trashDirectories) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(trashDirectory)) {
+                for (Path item : stream) {
+                    if (!pending.contains(item) && !item.equals(reclaiming)) {
+                        enqueue(item);
+                        recovered++;
+                    }
+                }
+            } catch (IOException e) {
+                // the trash directory is gone, nothing to recover there
+            }
+        }
+        return recovered;
+    }
+
+    // items renamed into the trash and not deleted yet, including the one being deleted
+    public synchronized int pendingItems() {
+        return pending.size() + (reclaiming != null ? 1 : 0);
+    }
+
+    // waits until everything queued is deleted, false on timeout
+    public synchronized boolean awaitEmpty(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (pendingItems() > 0) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0)
+                return false;
+            wait(left);
+        }
+        return true;
+    }
+
+    public synchronized String status() {
+        StringBuilder status = new StringBuilder();
+        status.append("trash: ").append(pendingItems()).append(" pending, ")
+                .append(reclaimedItems.get()).append(" reclaimed (").append(reclaimedEntries.get()).append(" entries), ")
+                .append(failures.get()).append(" failures, rate limit ").append(entriesPerSecond).append(" entries/s");
+        if (reclaiming != null)
+            status.append(System.lineSeparator()).append("  reclaiming ").append(reclaiming);
+        for (Path trashDirectory : trashDirectories)
+            status.append(System.lineSeparator()).append("  ").append(trashDirectory);
+        return status.toString();
+    }
+
+    // the trash of the preferred directory when it is on the same file system, else the highest
+    // writable directory above the target on its file system
+    Path trashDirectoryFor(Path target) throws IOException {
+        Path parent = target.getParent();
+        if (parent == null)
+            throw new IOException("cannot move " + target + " to the trash");
+        FileStore store = Files.getFileStore(parent);
+        if (Files.isDirectory(preferredDirectory) && store.equals(Files.getFileStore(preferredDirectory)))
+            return preferredDirectory.toAbsolutePath().normalize().resolve(DIRECTORY_NAME);
+        Path root = parent;
+        while (root.getParent() != null && Files.isWritable(root.getParent())
+                && store.equals(Files.getFileStore(root.getParent())))
+            root = root.getParent();
+        return root.resolve(DIRECTORY_NAME);
+    }
+
+    private void createTrashDirectory(Path trashDirectory) throws IOException {
+        boolean created = Files.notExists(trashDirectory);
+        Files.createDirectories(trashDirectory);
+        synchronized (this) {
+            loadRoots();
+            // remembered before anything is renamed into it, or a crash could leave it unknown
+            if (trashDirectories.add(trashDirectory))
+                Files.writeString(rootsFile, trashDirectory + System.lineSeparator(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        if (!created)
+            return;
+        // hidden on Windows as well, the leading dot does it elsewhere
+        try {
+            Files.setAttribute(trashDirectory, "dos:hidden", true);
+        } catch (UnsupportedOperationException | IOException e) {
+            // not a dos file system
+        }
+    }
+
+    private void loadRoots() {
+        if (rootsLoaded)
+            return;
+        rootsLoaded = true;
+        try {
+            for (String line : Files.readAllLines(rootsFile, StandardCharsets.UTF_8)) {
+                if (!line.isBlank())
+                    trashDirectories.add(Paths.get(line.trim()));
+            }
+        } catch (IOException e) {
+            // first use
+        }
+    }
+
+    private synchronized void enqueue(Path item) {
+        pending.add(item);
+        if (reclaimer == null) {
+            reclaimer = new Thread(this::reclaim, "trash-reclaimer");
+            reclaimer.setDaemon(true);
+            reclaimer.start();
+        }
+        notifyAll();
+    }
+
+    private void reclaim() {
+        while (true) {
+            Path item;
+            synchronized (this) {
+                reclaiming = null;
+                notifyAll();
+                while (pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        reclaimer = null;
+                        return;
+                    }
+                }
+                item = pending.poll();
+                reclaiming = item;
+            }
+            delete(item);
+            reclaimedItems.incrementAndGet();
+        }
+    }
+
+    // depth first, every directory right after its content, links are not followed
+    private void delete(Path item) {
+        try {
+            Files.walkFileTree(item, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    unlink(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    failures.incrementAndGet();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException e) {
+                    unlink(directory);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    private void unlink(Path path) {
+        throttle();
+        try {
+            Files.delete(path);
+            reclaimedEntries.incrementAndGet();
+        } catch (IOException e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    // one slot of 1/entriesPerSecond per entry, an idle reclaimer does not save up more than a second of slots
+    private void throttle() {
+        long now = System.nanoTime();
+        long interval = 1_000_000_000L / entriesPerSecond;
+        if (nextSlot < now - 1_000_000_000L)
+            nextSlot = now - 1_000_000_000L;
+        nextSlot += interval;
+        if (nextSlot > now)
+            LockSupport.parkNanos(nextSlot - now);
+    }
+}
@@ -0,0 +1,170 @@
+package org.os;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Deletes a directory tree with a ForkJoinPool: every directory is a task that streams its entries,
+// deletes the files right away and forks one task per subdirectory, then removes itself once
+// the subdirectories are gone (bottom up). The tree is never collected in memory beforehand.
+// Symbolic links are deleted, never followed
+public class TreeDeleter {
+
+    //failure messages kept for the report, the count goes on
+    private static final int MAX_FAILURE_MESSAGES = 10;
+
+    // what one worker thread did
+    public static final class WorkerStats {
+        private long files;
+        private long directories;
+        private long failures;
+
+        public long getFiles() {
+            return files;
+        }
+
+        public long getDirectories() {
+            return directories;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getEntries() {
+            return files + directories;
+        }
+    }
+
+    public record Result(long files, long directories, long failures, long nanos,
+                         Map<String, WorkerStats> workers, List<String> failureMessages) {
+
+        public long entries() {
+            return files + directories;
+        }
+
+        public long entriesPerSecond(long entries) {
+            return nanos == 0 ? entries : entries * 1_000_000_000L / nanos;
+        }
+    }
+
+    private final int parallelism;
+
+    public TreeDeleter(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public Result delete(Path root) {
+        Map<String, WorkerStats> workers = new ConcurrentHashMap<>();
+        List<String> failureMessages = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger workerNumber = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(parallelism, factory -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(factory);
+            thread.setName("rm-worker-" + workerNumber.incrementAndGet());
+            return thread;
+        }, null, false);
+
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new DeleteTask(root, workers, failureMessages));
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        long files = 0, directories = 0, failures = 0;
+        for (WorkerStats stats : workers.values()) {
+            files += stats.files;
+            directories += stats.directories;
+            failures += stats.failures;
+        }
+        return new Result(files, directories, failures, nanos, new TreeMap<>(workers), List.copyOf(failureMessages));
+    }
+
+    // tasks are never serialized, they live in the pool for one delete
+    @SuppressWarnings("serial")
+    private static final class DeleteTask extends RecursiveAction {
+        private final Path directory;
+        private final Map<String, WorkerStats> workers;
+        private final List<String> failureMessages;
+
+        private DeleteTask(Path directory, Map<String, WorkerStats> workers, List<String> failureMessages) {
+            this.directory = directory;
+            this.workers = workers;
+            this.failureMessages = failureMessages;
+        }
+
+        @Override
+        protected void compute() {
+            List<DeleteTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        failed(entry, e);
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        DeleteTask task = new DeleteTask(entry, workers, failureMessages);
+                        task.fork();
+                        subdirectories.add(task);
+                    } else {
+                        try {
+                            Files.delete(entry);
+                            stats().files++;
+                        } catch (IOException e) {
+                            failed(entry, e);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                failed(directory, e);
+            }
+            for (DeleteTask task : subdirectories)
+                task.join();
+            // join() may have run other tasks meanwhile, the directory goes last and only once it is empty
+            try {
+                Files.delete(directory);
+                stats().directories++;
+            } catch (IOException e) {
+                failed(directory, e);
+            }
+        }
+
+        // the counters of the thread running this part of the task
+        private WorkerStats stats() {
+            return workers.computeIfAbsent(Thread.currentThread().getName(), name -> new WorkerStats());
+        }
+
+        private void failed(Path path, IOException e) {
+            stats().failures++;
+            if (failureMessages.size() < MAX_FAILURE_MESSAGES)
+                failureMessages.add(path + ": " + e.getClass().getSimpleName() + " " + e.getMessage());
+        }
+    }
+}
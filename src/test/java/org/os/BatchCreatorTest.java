@@ -0,0 +1,65 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCreatorTest {
+
+    private Path workingDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("batchCreatorTest");
+    }
+
+    @AfterEach
+    void tearDown() {
+        new TreeDeleter(1).delete(workingDir);
+    }
+
+    @Test
+    void testCreatesFilesWithSharedParentsOnce() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            names.add("a/b/dir" + (i % 5) + "/file" + i);
+        names.add("a/b/dir0/file0");
+
+        BatchCreator.Result result = new BatchCreator(workingDir).createFiles(names);
+
+        assertEquals(500, result.created());
+        assertEquals(0, result.failures());
+        assertEquals(5, result.parentDirectories(), "Only the five deepest parents should be created");
+        assertTrue(Files.isRegularFile(workingDir.resolve("a/b/dir4/file499")));
+    }
+
+    @Test
+    void testCreatesDirectoriesThatAreAlsoParents() throws IOException {
+        Files.createDirectory(workingDir.resolve("old"));
+
+        BatchCreator.Result result = new BatchCreator(workingDir).createDirectories(List.of("x", "x/y", "x/y/z", "old"));
+
+        assertEquals(3, result.created());
+        assertEquals(1, result.existing());
+        assertTrue(Files.isDirectory(workingDir.resolve("x/y/z")));
+    }
+
+    @Test
+    void testReportsFailures() throws IOException {
+        Files.createFile(workingDir.resolve("plain"));
+
+        BatchCreator.Result result = new BatchCreator(workingDir).createFiles(List.of("plain/inside", "ok"));
+
+        assertEquals(1, result.created());
+        assertTrue(result.failures() > 0);
+        assertFalse(result.failureMessages().isEmpty());
+    }
+}
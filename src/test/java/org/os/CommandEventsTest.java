@@ -0,0 +1,73 @@
+package org.os;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandEventsTest {
+
+    private Path workingDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("eventsTest");
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (File file : workingDir.toFile().listFiles()) {
+            file.delete();
+        }
+        workingDir.toFile().delete();
+    }
+
+    @Test
+    void testCommandsEmitEvents() throws IOException {
+        Files.writeString(workingDir.resolve("notes.txt"), "alpha\nbeta\n");
+        CommandEngine engine = new CommandEngine(CommandRegistry.standard(), DirectoryCache.getDefault());
+        CommandLineInterpreter cli = engine.openSession(workingDir.toFile(), OutputSink.memory());
+        Path recordingFile = workingDir.resolve("test.jfr");
+
+        try (Recording recording = new Recording()) {
+            for (String event : new String[]{"org.os.Command", "org.os.DirectoryListing", "org.os.FileRead", "org.os.Redirection"})
+                recording.enable(event).withoutThreshold();
+            recording.start();
+            engine.execute(cli, "ls");
+            engine.execute(cli, "grep beta notes > found");
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        RecordedEvent grep = find(events, "org.os.Command", "grep");
+        assertEquals("beta notes", grep.getString("arguments"));
+        assertEquals(11, grep.getLong("bytesRead"));
+        RecordedEvent listing = find(events, "org.os.DirectoryListing", null);
+        assertEquals(1, listing.getLong("entries"));
+        RecordedEvent read = find(events, "org.os.FileRead", null);
+        assertTrue(read.getString("path").endsWith("notes.txt"));
+        RecordedEvent redirection = find(events, "org.os.Redirection", null);
+        assertTrue(redirection.getString("path").endsWith("found.txt"));
+        assertEquals(("beta" + System.lineSeparator()).length(), redirection.getLong("bytes"));
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String type, String command) {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(type) && (command == null || command.equals(event.getString("command"))))
+                return event;
+        }
+        fail("no " + type + " event" + (command == null ? "" : " for " + command));
+        return null;
+    }
+}
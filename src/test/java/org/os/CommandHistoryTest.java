@@ -0,0 +1,166 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandHistoryTest {
+
+    private Path workingDir;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("historyTest");
+        file = workingDir.resolve("history");
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (File entry : workingDir.toFile().listFiles())
+            entry.delete();
+        workingDir.toFile().delete();
+    }
+
+    @Test
+    void testLinesSurviveARestart() throws IOException {
+        try (CommandHistory history = CommandHistory.open(file)) {
+            history.add("ls -l");
+            history.add("cd ünïcode");
+            history.add("cd ünïcode");
+            history.add("  ");
+        }
+
+        try (CommandHistory history = CommandHistory.open(file)) {
+            assertEquals(2, history.size());
+            assertEquals("ls -l", history.get(1));
+            assertEquals("cd ünïcode", history.get(2));
+            assertEquals(List.of("    2  cd ünïcode"), history.tail(1));
+        }
+    }
+
+    @Test
+    void testExpand() throws IOException, ParseException {
+        try (CommandHistory history = CommandHistory.open(file)) {
+            history.add("mkdir docs");
+            history.add("ls -a");
+            history.add("cat notes.txt | grep todo");
+
+            assertEquals("cat notes.txt | grep todo", history.expand("!!"));
+            assertEquals("mkdir docs", history.expand("!1"));
+            assertEquals("ls -a", history.expand("!-2"));
+            assertEquals("mkdir docs", history.expand("!mk"));
+            assertEquals("cat notes.txt | grep todo", history.expand("!?grep?"));
+            assertEquals("pwd", history.expand("pwd"));
+            assertThrows(ParseException.class, () -> history.expand("!9"));
+            assertThrows(ParseException.class, () -> history.expand("!?nothing"));
+        }
+    }
+
+    @Test
+    void testSearchGoesBackFromTheGivenLine() throws IOException {
+        try (CommandHistory history = CommandHistory.open(file)) {
+            history.add("grep a one.txt");
+            history.add("pwd");
+            history.add("grep b two.txt");
+
+            assertEquals(3, history.search("grep", history.size() + 1));
+            assertEquals(1, history.search("grep", 3));
+            assertEquals(0, history.search("grep", 1));
+        }
+    }
+
+    @Test
+    void testCompactionKeepsTheNewestCopyOfEachLine() throws IOException, InterruptedException {
+        try (CommandHistory history = CommandHistory.open(file, 3)) {
+            history.add("ls");
+            history.add("pwd");
+            history.add("ls");
+            history.add("cd docs");
+            history.add("pwd");
+            awaitSize(history, 3);
+            assertEquals(List.of("    1  ls", "    2  cd docs", "    3  pwd"), history.tail(-1));
+
+            // lines added after the compaction go to the new log, and are compacted in turn
+            history.add("wc -l notes.txt");
+            awaitSize(history, 3);
+            assertEquals(List.of("    1  cd docs", "    2  pwd", "    3  wc -l notes.txt"), history.tail(-1));
+        }
+        try (CommandHistory history = CommandHistory.open(file, 10)) {
+            assertEquals(3, history.size());
+            assertEquals("wc -l notes.txt", history.get(3));
+        }
+        assertFalse(Files.exists(workingDir.resolve("history.compact")));
+    }
+
+    @Test
+    void testClearWinsOverARunningCompaction() throws IOException, InterruptedException {
+        try (CommandHistory history = CommandHistory.open(file, 3)) {
+            for (int i = 0; i < 100; i++)
+                history.add("echo " + i);
+            history.clear();
+            history.add("pwd");
+            // whatever the compaction was doing, it ends without swapping its copy in
+            Thread.sleep(200);
+            assertEquals(List.of("    1  pwd"), history.tail(-1));
+        }
+        try (CommandHistory history = CommandHistory.open(file, 3)) {
+            assertEquals(List.of("    1  pwd"), history.tail(-1));
+        }
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Files.writeString(file, "not a history file at all, just some text\n");
+
+        assertThrows(IOException.class, () -> CommandHistory.open(file));
+    }
+
+    @Test
+    void testManyLines() throws IOException {
+        try (CommandHistory history = CommandHistory.open(file, 10_000_000)) {
+            for (int i = 0; i < 200_000; i++)
+                history.add("echo " + i);
+            assertEquals(200_000, history.size());
+            assertEquals("echo 123456", history.get(123_457));
+            assertEquals(50_000, history.search("echo 4", history.size() + 1));
+        }
+        try (CommandHistory history = CommandHistory.open(file, 10_000_000)) {
+            assertEquals(200_000, history.size());
+            assertEquals("echo 199999", history.get(200_000));
+        }
+    }
+
+    @Test
+    void testHistoryCommand() throws IOException, ParseException {
+        File directory = workingDir.toFile();
+        OutputSink.MemorySink output = OutputSink.memory();
+        CommandLineInterpreter cli = new CommandLineInterpreter(directory, DirectoryCache.getDefault(), output);
+        CommandRegistry registry = CommandRegistry.standard();
+        try (CommandHistory history = CommandHistory.open(file)) {
+            cli.getSession().setHistory(history);
+            history.add("pwd");
+            history.add("history 1");
+            for (Job job : new CommandParser().parse("history 1"))
+                registry.execute(cli, job);
+
+            assertEquals("    2  history 1" + System.lineSeparator(), output.toString());
+        }
+    }
+
+    private static void awaitSize(CommandHistory history, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (history.size() != size && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(size, history.size());
+    }
+}
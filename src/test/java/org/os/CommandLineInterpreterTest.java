@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -168,6 +169,31 @@ class CommandLineInterpreterTest {
         assertEquals(outputStream.toString().trim(),expectedString,"Output should list only non-hidden files and directories but reversed");
     }
 
+    @Test
+    void testPrintListFilesAcrossChunks() throws Exception {
+        int entries = DirectoryLister.CHUNK_SIZE * 2 + 5;
+        for (int i = 0; i < entries; i++) {
+            new File(workingDir, "file" + i).createNewFile();
+        }
+        cli.printListFiles(Arrays.asList("ls"));
+
+        String output = outputStream.toString().trim();
+        assertTrue(output.contains(entries + "-file"), "Every entry should be numbered");
+        assertEquals(entries, output.split(", ").length, "Output should list every entry once");
+    }
+
+    @Test
+    void testPrintListFilesSeesTouchedFile() throws Exception {
+        new File(workingDir, "file1.txt").createNewFile();
+        cli.printListFiles(Arrays.asList("ls"));
+        cli.touch(Arrays.asList("touch", "file2.txt"));
+        outputStream.reset();
+
+        cli.printListFiles(Arrays.asList("ls"));
+
+        assertTrue(outputStream.toString().contains("file2.txt"), "A cached listing should not hide a touched file");
+    }
+
     @Test
     void testPrintWorkingDirectory() throws Exception{
         cli.printWorkingDirectory();
@@ -247,6 +273,15 @@ class CommandLineInterpreterTest {
         assertTrue(outputStream.toString().trim().contains(expectedOutput), "Output should indicate failure to create the file.");
     }
 
+    @Test
+    void testTouchBatchPrintsOneSummary() throws IOException {
+        cli.touch(Arrays.asList("touch", "--batch", "one.txt", "two.txt", "one.txt"));
+
+        assertTrue(outputStream.toString().startsWith("touch: created 2 files (0 already existed"), outputStream.toString());
+        assertFalse(outputStream.toString().contains("File Created Successfully"), "Batch mode should not print a line per file");
+        assertTrue(new File(workingDir, "two.txt").exists());
+    }
+
     @Test
     void testRemoveOneDirectory() throws Exception{
         List<String> commandTokens = Arrays.asList("mkdir","newDir"), deleteCommand = Arrays.asList("rmdir","newDir");
@@ -272,6 +307,38 @@ class CommandLineInterpreterTest {
         assertTrue(outputStream.toString().trim().contains(expectedOutput), "utput should indicate failure to delete the directory." );
     }
 
+    @Test
+    void testRemoveOneDirectoryReportsOnce() {
+        new File(workingDir, "newDir").mkdir();
+
+        cli.rmdir(Arrays.asList("rmdir", "newDir"));
+
+        String output = outputStream.toString();
+        assertEquals(output.indexOf("Directory Deleted"), output.lastIndexOf("Directory Deleted"), "rmdir should delete and report once");
+        assertFalse(output.contains("No such directory"), "A deleted directory should not be reported as missing");
+    }
+
+    @Test
+    void testRemoveDirectoryWithParents() {
+        new File(workingDir, "a/b/c").mkdirs();
+
+        cli.rmdir(Arrays.asList("rmdir", "-p", "a/b/c"));
+
+        assertFalse(new File(workingDir, "a").exists(), "rmdir -p should remove the empty parents too");
+    }
+
+    @Test
+    void testRemoveDirectoryWithParentsStopsAtNonEmpty() throws IOException {
+        new File(workingDir, "a/b").mkdirs();
+        new File(workingDir, "a/keep").createNewFile();
+
+        cli.rmdir(Arrays.asList("rmdir", "-p", "a/b"));
+
+        assertFalse(new File(workingDir, "a/b").exists(), "The named directory should be removed");
+        assertTrue(new File(workingDir, "a/keep").exists(), "A parent with files should stay");
+        new File(workingDir, "a/keep").delete();
+    }
+
 //--------------------------------------------------------------------------------------------------------------------------------------------------------------
 
     @Test
@@ -383,6 +450,42 @@ class CommandLineInterpreterTest {
         assertTrue(outputStream.toString().contains("mv: Target file does not exist: source2.txt") , "Should display an error message if the source file does not exist");
     }
 
+    @Test
+    void testCopyFileIntoDirectory() throws IOException {
+        Files.writeString(new File(workingDir, "source.txt").toPath(), "content");
+        new File(workingDir, "destination").mkdir();
+
+        cli.cp(List.of("cp", "source.txt", "destination"));
+
+        File copy = new File(workingDir, "destination/source.txt");
+        assertEquals("content", Files.readString(copy.toPath()));
+        assertTrue(new File(workingDir, "source.txt").exists(), "cp should keep the source");
+        assertTrue(outputStream.toString().contains("cp: copied 1 files, 7 bytes"));
+        copy.delete();
+    }
+
+    @Test
+    void testCopyFileOntoItselfKeepsIt() throws IOException {
+        Files.writeString(new File(workingDir, "a.txt").toPath(), "content");
+
+        cli.cp(List.of("cp", "a.txt", "."));
+        cli.cp(List.of("cp", "a.txt", "a.txt"));
+
+        assertTrue(outputStream.toString().contains("cp: 'a.txt' and 'a.txt' are the same file"));
+        assertFalse(outputStream.toString().contains("cp: copied"));
+        assertEquals("content", Files.readString(new File(workingDir, "a.txt").toPath()));
+    }
+
+    @Test
+    void testCopyDirectoryNeedsRecursion() {
+        new File(workingDir, "folder").mkdir();
+
+        cli.cp(List.of("cp", "folder", "other"));
+
+        assertTrue(outputStream.toString().contains("cp: -r not specified; omitting directory 'folder'"));
+        assertFalse(new File(workingDir, "other").exists());
+    }
+
     @Test
     void testDestinationDirectoryDoesNotExistForMultipleFiles() throws IOException {
         File sourceFile = new File(workingDir, "source.txt");
@@ -453,6 +556,87 @@ class CommandLineInterpreterTest {
         assertFalse(file2.exists(), "Second file should be deleted successfully");
     }
 
+    @Test
+    void testRemoveDirectoryRecursively() throws IOException {
+        File tree = new File(workingDir, "tree");
+        for (int i = 0; i < 5; i++) {
+            File directory = new File(tree, "dir" + i + "/sub");
+            directory.mkdirs();
+            for (int j = 0; j < 20; j++)
+                new File(directory, "file" + j).createNewFile();
+        }
+
+        cli.rm(List.of("rm", "-r", "--parallel=2", "tree"));
+
+        assertFalse(tree.exists(), "rm -r should remove the whole tree");
+        assertTrue(outputStream.toString().contains("rm: removed 100 files and 11 directories from tree"), "rm -r should report what it removed");
+    }
+
+    @Test
+    void testRemoveAsync() throws Exception {
+        File tree = new File(workingDir, "tree/sub");
+        tree.mkdirs();
+        new File(tree, "file").createNewFile();
+        // a trash of its own, nothing goes to the home directory
+        Path trashDir = Files.createTempDirectory("trashDir");
+        Trash trash = new Trash(trashDir.resolve("roots"), trashDir, 100_000);
+        cli = new CommandLineInterpreter(new Session(workingDir, OutputSink.console(OutputSink.FlushPolicy.EVERY_WRITE)),
+                DirectoryCache.getDefault(), trash);
+
+        try {
+            cli.rm(List.of("rm", "-r", "--async", "tree"));
+
+            assertFalse(new File(workingDir, "tree").exists(), "rm --async should move the tree away right away");
+            assertTrue(trash.awaitEmpty(10_000), "The trash should be reclaimed in the background");
+        } finally {
+            new TreeDeleter(1).delete(trashDir);
+        }
+    }
+
+    @Test
+    void testRemoveRecursivelyInvalidParallelism() {
+        new File(workingDir, "tree").mkdir();
+
+        cli.rm(List.of("rm", "-r", "--parallel=0", "tree"));
+
+        assertTrue(outputStream.toString().contains("rm: invalid parallelism: 0"));
+        assertTrue(new File(workingDir, "tree").exists(), "Nothing should be removed");
+    }
+
+    @Test
+    void testFind() throws IOException {
+        new File(workingDir, "src/main").mkdirs();
+        new File(workingDir, "src/main/App.java").createNewFile();
+        new File(workingDir, "src/readme.txt").createNewFile();
+
+        cli.find(Arrays.asList("find", "src", "-name", "*.java", "-type", "f"));
+
+        assertEquals("src" + File.separator + "main" + File.separator + "App.java", outputStream.toString().trim());
+        new File(workingDir, "src/main/App.java").delete();
+        new File(workingDir, "src/main").delete();
+        new File(workingDir, "src/readme.txt").delete();
+    }
+
+    @Test
+    void testFindMissingDirectory() {
+        cli.find(Arrays.asList("find", "missing", "-name", "x"));
+
+        assertTrue(outputStream.toString().contains("find: 'missing': No such file or directory"));
+    }
+
+    @Test
+    void testGrepRecursive() throws IOException {
+        new File(workingDir, "logs").mkdir();
+        Files.writeString(new File(workingDir, "logs/a.log").toPath(), "start\nfailed: disk\n");
+        Files.writeString(new File(workingDir, "logs/b.log").toPath(), "nothing here\n");
+
+        cli.grep(Arrays.asList("grep", "-rn", "failed", "logs"));
+
+        assertEquals("logs" + File.separator + "a.log:2:failed: disk", outputStream.toString().trim());
+        new File(workingDir, "logs/a.log").delete();
+        new File(workingDir, "logs/b.log").delete();
+    }
+
     @Test
     void testCatNoArguments() throws IOException {
         // Simulate user input
@@ -467,6 +651,60 @@ class CommandLineInterpreterTest {
         assertEquals(outputStream.toString().trim(),expectedOutput);
     }
 
+    @Test
+    void testCatConcatenatesFiles() throws IOException {
+        Files.writeString(new File(workingDir, "first.txt").toPath(), "Line 1" + System.lineSeparator());
+        Files.writeString(new File(workingDir, "second.log").toPath(), "Line 2" + System.lineSeparator());
+
+        List<String> commandTokens = Arrays.asList("cat", "first", "second.log");
+        cli.cat(commandTokens);
+
+        assertEquals("Line 1" + System.lineSeparator() + "Line 2", outputStream.toString().trim());
+    }
+
+    @Test
+    void testCatMissingFile() throws IOException {
+        Files.writeString(new File(workingDir, "first.txt").toPath(), "Line 1");
+
+        List<String> commandTokens = Arrays.asList("cat", "first", "missing");
+        cli.cat(commandTokens);
+
+        assertEquals("File not found or cannot be read.", outputStream.toString().trim());
+    }
+
+    @Test
+    void testCatWritesInputToFile() throws IOException {
+        System.setIn(new ByteArrayInputStream("Line 1\nLine 2\nstop\nignored\n".getBytes()));
+        cli.cat(Arrays.asList("cat", ">", "typed"));
+        System.setIn(new ByteArrayInputStream("Line 3\n".getBytes()));
+        cli.cat(Arrays.asList("cat", ">>", "typed"));
+
+        List<String> lines = Files.readAllLines(new File(workingDir, "typed.txt").toPath());
+        assertEquals(Arrays.asList("Line 1", "Line 2", "Line 3"), lines, "input should end at stop or at the end of the input");
+        new File(workingDir, "typed.txt").delete();
+    }
+
+    @Test
+    void testCatRawKeepsBytes() throws IOException {
+        byte[] payload = {0, 1, 's', 't', 'o', 'p', '\r', '\n', (byte) 0xFF, '\n'};
+        System.setIn(new ByteArrayInputStream(payload));
+
+        cli.cat(Arrays.asList("cat", "--raw", "--flush=0", ">", "binary"));
+
+        assertArrayEquals(payload, Files.readAllBytes(new File(workingDir, "binary.txt").toPath()));
+        assertEquals("", outputStream.toString());
+        new File(workingDir, "binary.txt").delete();
+    }
+
+    @Test
+    void testWcCountsFile() throws IOException {
+        Files.writeString(new File(workingDir, "words.txt").toPath(), "one two\nthree\n");
+
+        cli.wc(Arrays.asList("wc", "words.txt"));
+
+        assertEquals("2 3 14 words.txt", outputStream.toString().trim());
+    }
+
 //    @Test
 //    void testCatWriteToFile() throws IOException {
 //        // Simulate user input
@@ -509,6 +747,19 @@ class CommandLineInterpreterTest {
 
     }
 
+    @Test
+    void testGreaterThanIntoMissingDirectory() throws IOException {
+        new File(workingDir, "file.txt").createNewFile();
+
+        cli.printListFiles(Arrays.asList("ls", ">", "logs/out"));
+        cli.printListFiles(Arrays.asList("ls", ">", "file.txt/out"));
+
+        File out = new File(workingDir, "logs/out.txt");
+        assertTrue(out.exists(), "The missing directory should be created");
+        assertTrue(outputStream.toString().contains("ls: cannot write file.txt/out.txt: File exists"));
+        out.delete();
+    }
+
 }
 
 //---------------------------------------------------------------------------
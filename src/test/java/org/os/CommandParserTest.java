@@ -0,0 +1,64 @@
+package org.os;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandParserTest {
+
+    private final CommandParser parser = new CommandParser();
+
+    @Test
+    void testRepeatedSpaces() throws ParseException {
+        List<Job> jobs = parser.parse("  ls   -a  ");
+
+        assertEquals(List.of("ls", "-a"), jobs.get(0).getStages().get(0).getWords());
+    }
+
+    @Test
+    void testQuotesAndEscapes() throws ParseException {
+        List<Job> jobs = parser.parse("cd \"my dir\" 'a > b' c\\ d \"say \\\"hi\\\"\"");
+
+        assertEquals(List.of("cd", "my dir", "a > b", "c d", "say \"hi\""), jobs.get(0).getStages().get(0).getWords());
+    }
+
+    @Test
+    void testRedirection() throws ParseException {
+        SimpleCommand command = parser.parse("ls -r>>out").get(0).getStages().get(0);
+
+        assertEquals("out", command.getRedirectTarget());
+        assertTrue(command.isAppend());
+        assertEquals(List.of("ls", "-r", ">>", "out"), command.tokens());
+    }
+
+    @Test
+    void testPipelineAndBackground() throws ParseException {
+        List<Job> jobs = parser.parse("cat a | wc -l & pwd");
+
+        assertEquals(2, jobs.size());
+        assertTrue(jobs.get(0).isBackground());
+        assertEquals(List.of(List.of("cat", "a"), List.of("wc", "-l")), jobs.get(0).stageTokens());
+        assertFalse(jobs.get(1).isBackground());
+    }
+
+    @Test
+    void testBlankLine() throws ParseException {
+        assertTrue(parser.parse("   ").isEmpty());
+    }
+
+    @Test
+    void testSyntaxErrors() {
+        assertThrows(ParseException.class, () -> parser.parse("ls |"));
+        assertThrows(ParseException.class, () -> parser.parse("ls >"));
+        assertThrows(ParseException.class, () -> parser.parse("| wc"));
+        assertThrows(ParseException.class, () -> parser.parse("cat 'open"));
+    }
+
+    @Test
+    void testRepeatedLineIsCached() throws ParseException {
+        assertSame(parser.parse("ls -l"), parser.parse("ls -l"));
+    }
+}
@@ -0,0 +1,173 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandRegistryTest {
+
+    private CommandLineInterpreter cli;
+    private File workingDir;
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private final PrintStream console = System.out;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("registryTest").toFile();
+        cli = new CommandLineInterpreter(workingDir);
+        System.setOut(new PrintStream(outputStream));
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (File file : workingDir.listFiles()) {
+            file.delete();
+        }
+        workingDir.delete();
+        System.setOut(console);
+    }
+
+    @Test
+    void testParsesCombinedOptions() throws IOException {
+        List<Invocation> seen = new ArrayList<>();
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("demo", "ab", (cli, invocation) -> seen.add(invocation), "all");
+
+        registry.execute(cli, Arrays.asList("demo", "-ab", "--all", "file"));
+
+        assertEquals(1, seen.size());
+        assertTrue(seen.get(0).hasOption("a") && seen.get(0).hasOption("b") && seen.get(0).hasOption("all"));
+    }
+
+    @Test
+    void testWcTakesCombinedOptions() throws IOException {
+        Files.writeString(new File(workingDir, "words.txt").toPath(), "one two\nthree\n");
+
+        CommandRegistry.standard().execute(cli, Arrays.asList("wc", "-lw", "words.txt"));
+
+        assertEquals("2 3 words.txt", outputStream.toString().trim());
+    }
+
+    @Test
+    void testRejectsUnknownOption() throws IOException {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("demo", "a", (cli, invocation) -> fail("Command should not run"));
+
+        registry.execute(cli, Arrays.asList("demo", "-x"));
+
+        assertTrue(outputStream.toString().contains("demo: invalid option -- 'x'"));
+    }
+
+    @Test
+    void testUnknownCommandGoesToErrorHandler() throws IOException {
+        CommandRegistry.standard().execute(cli, Arrays.asList("unvalidCommand"));
+
+        assertTrue(outputStream.toString().contains("Error executing command: unvalidCommand not valid"));
+    }
+
+    @Test
+    void testHelpIgnoresCase() throws IOException {
+        CommandRegistry.standard().execute(cli, Arrays.asList("HELP"));
+
+        assertTrue(outputStream.toString().contains("Available Commands:"));
+    }
+
+    @Test
+    void testLsCombinedOptionsWithRedirect() throws IOException, ParseException {
+        new File(workingDir, ".hidden").createNewFile();
+        new File(workingDir, "visible").createNewFile();
+
+        CommandRegistry.standard().execute(cli, new CommandParser().parse("ls -ar > listing").get(0));
+
+        String listing = Files.readString(new File(workingDir, "listing.txt").toPath());
+        assertTrue(listing.contains(".hidden") && listing.contains("visible"), "ls -ar should list hidden files into the target");
+    }
+
+    @Test
+    void testQuotedRedirectionIsAWord() throws IOException, ParseException {
+        Files.writeString(new File(workingDir, ">").toPath(), "angle\n");
+        CommandRegistry registry = CommandRegistry.standard();
+
+        registry.execute(cli, new CommandParser().parse("ls '>' out").get(0));
+        registry.execute(cli, new CommandParser().parse("cat '>' '>'").get(0));
+
+        assertFalse(new File(workingDir, "out.txt").exists() || new File(workingDir, ">.txt").exists(), "a quoted > is not a redirection");
+        assertTrue(outputStream.toString().contains("angle"));
+    }
+
+    @Test
+    void testLongOptionWithValue() throws IOException {
+        List<Invocation> seen = new ArrayList<>();
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("demo", "", (cli, invocation) -> seen.add(invocation), "parallel=");
+
+        registry.execute(cli, Arrays.asList("demo", "--parallel=4", "dir"));
+        registry.execute(cli, Arrays.asList("demo", "--parallel", "dir"));
+
+        assertEquals(1, seen.size());
+        assertTrue(seen.get(0).hasOption("parallel"));
+        assertTrue(outputStream.toString().contains("demo: option '--parallel' requires an argument"));
+    }
+
+    @Test
+    void testRedirectsOutputOfAnyCommand() throws IOException, ParseException {
+        Files.writeString(new File(workingDir, "notes").toPath(), "apple\nbanana\napricot\n");
+        CommandRegistry registry = CommandRegistry.standard();
+
+        registry.execute(cli, new CommandParser().parse("grep ap notes > found").get(0));
+        registry.execute(cli, new CommandParser().parse("cat notes | grep banana >> found").get(0));
+
+        String found = Files.readString(new File(workingDir, "found.txt").toPath());
+        assertEquals("apple" + System.lineSeparator() + "apricot" + System.lineSeparator() + "banana" + System.lineSeparator(), found);
+        assertEquals("", outputStream.toString(), "redirected output should not reach the console");
+    }
+
+    @Test
+    void testRecordsStatsPerCommand() throws IOException {
+        Files.writeString(new File(workingDir, "data.txt").toPath(), "12345");
+        CommandStats stats = new CommandStats();
+        CommandRegistry registry = new CommandRegistry(stats);
+        registry.register("cat", (cli, invocation) -> cli.cat(invocation.getTokens()));
+        registry.register("ls", "", (cli, invocation) -> cli.printListFiles(invocation.getTokens()));
+
+        registry.execute(cli, Arrays.asList("cat", "data"));
+        registry.execute(cli, Arrays.asList("cat", "missing"));
+        registry.execute(cli, Arrays.asList("ls"));
+
+        CommandStats.Metrics cat = stats.get("cat");
+        assertEquals(2, cat.getLatency().count());
+        assertEquals(1, cat.getErrors());
+        assertEquals(5, cat.getBytesRead());
+        assertTrue(cat.getBytesWritten() >= 5);
+        assertEquals(1, stats.get("ls").getEntries());
+
+        StringWriter table = new StringWriter();
+        stats.print(table);
+        assertTrue(table.toString().contains("cat") && table.toString().contains("p99(us)"));
+    }
+
+    @Test
+    void testPipeDoesNotCountTheFileTwice() throws IOException, ParseException {
+        Files.writeString(new File(workingDir, "data.txt").toPath(), "one two\n");
+        CommandStats stats = new CommandStats();
+        CommandRegistry registry = new CommandRegistry(stats);
+        registry.register("cat", (cli, invocation) -> cli.cat(invocation.getTokens()));
+        registry.register("wc", "lwc", (cli, invocation) -> cli.wc(invocation.getTokens()));
+
+        for (Job job : new CommandParser().parse("cat data | cat | wc -c"))
+            registry.execute(cli, job);
+
+        assertEquals("8", outputStream.toString().trim());
+        assertEquals(8, stats.get("cat").getBytesRead());
+        assertEquals(0, stats.get("wc").getBytesRead());
+    }
+}
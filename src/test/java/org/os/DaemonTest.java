@@ -0,0 +1,120 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DaemonTest {
+
+    private Path socketDir;
+    private File first;
+    private File second;
+    private Daemon daemon;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        socketDir = Files.createTempDirectory("daemon");
+        first = Files.createTempDirectory("daemonFirst").toFile();
+        second = Files.createTempDirectory("daemonSecond").toFile();
+        daemon = new Daemon(CommandEngine.standard(), socketDir.resolve("cli.sock"));
+        daemon.bind();
+        Thread.ofPlatform().daemon().start(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        daemon.close();
+        for (File dir : new File[]{first, second}) {
+            for (File file : dir.listFiles())
+                file.delete();
+            dir.delete();
+        }
+        Files.deleteIfExists(socketDir);
+    }
+
+    private final ByteArrayOutputStream error = new ByteArrayOutputStream();
+
+    private String run(File directory, List<String> arguments, String input, int expectedExit) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        InputStream stdin = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+        int exit = DaemonClient.run(socketDir.resolve("cli.sock"), directory.getPath(), arguments, stdin, output, error);
+        assertEquals(expectedExit, exit);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testEachClientHasItsOwnDirectory() throws IOException {
+        Files.writeString(new File(first, "a.txt").toPath(), "one\n");
+        Files.writeString(new File(second, "b.txt").toPath(), "two\n");
+
+        assertTrue(run(first, List.of("ls"), "", 0).contains("a.txt"));
+        assertFalse(run(second, List.of("ls"), "", 0).contains("a.txt"));
+        assertEquals(first.getAbsolutePath() + System.lineSeparator(), run(first, List.of("pwd"), "", 0));
+    }
+
+    @Test
+    void testDashCIsOneCommandLine() throws IOException {
+        Files.writeString(new File(first, "notes.txt").toPath(), "alpha\nbeta\n");
+
+        assertEquals("beta" + System.lineSeparator(), run(first, List.of("-c", "cat notes.txt | grep beta"), "", 0));
+    }
+
+    @Test
+    void testArgumentsKeepTheirSpacesAndQuotes() throws IOException {
+        Files.writeString(new File(first, "it's my notes.txt").toPath(), "alpha | beta\n");
+
+        assertEquals("alpha | beta" + System.lineSeparator(), run(first, List.of("cat", "it's my notes.txt"), "", 0));
+        assertEquals("alpha | beta" + System.lineSeparator(), run(first, List.of("grep", "a | b", "it's my notes.txt"), "", 0));
+    }
+
+    @Test
+    void testMissingDirectoryIsAnErrorNotALostDaemon() throws IOException {
+        run(new File(first, "gone"), List.of("pwd"), "", 1);
+
+        assertTrue(error.toString(StandardCharsets.UTF_8).contains("No such directory"));
+    }
+
+    @Test
+    void testStdinIsAScriptWithoutArguments() throws IOException {
+        String output = run(first, List.of(), "mkdir sub\ncd sub\npwd\n", 0);
+
+        assertTrue(output.endsWith(System.lineSeparator() + new File(first, "sub").getAbsolutePath() + System.lineSeparator()));
+    }
+
+    @Test
+    void testStdinReachesTheCommand() throws IOException {
+        run(first, List.of("-c", "cat > typed"), "hello\nstop\n", 0);
+
+        assertEquals("hello" + System.lineSeparator(), Files.readString(new File(first, "typed.txt").toPath()));
+    }
+
+    @Test
+    void testFailureGivesExitCodeOne() throws IOException {
+        run(first, List.of("cat", "missing.txt"), "", 1);
+    }
+
+    @Test
+    void testSecondDaemonOnTheSameSocketFails() {
+        Daemon other = new Daemon(CommandEngine.standard(), socketDir.resolve("cli.sock"));
+
+        assertThrows(IOException.class, other::bind);
+    }
+}
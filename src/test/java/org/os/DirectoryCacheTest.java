@@ -0,0 +1,75 @@
+package org.os;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryCacheTest {
+
+    private static List<DirectoryCache.Entry> entries(Path directory, int count) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+        List<DirectoryCache.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new DirectoryCache.Entry("file" + i, attributes));
+        }
+        return entries;
+    }
+
+    @Test
+    void testLookupAfterLoad() throws IOException {
+        DirectoryCache cache = new DirectoryCache(100, 100);
+        Path directory = Files.createTempDirectory("cacheTest");
+
+        assertNull(cache.lookup(directory), "Nothing should be cached before the first load");
+        cache.complete(cache.beginLoad(directory), entries(directory, 3));
+
+        assertEquals(3, cache.lookup(directory).size(), "The loaded listing should be served from memory");
+        assertTrue(cache.stats().contains("hits: 1, misses: 1"));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedDirectory() throws IOException {
+        DirectoryCache cache = new DirectoryCache(10, 10);
+        Path first = Files.createTempDirectory("cacheTest");
+        Path second = Files.createTempDirectory("cacheTest");
+        Path third = Files.createTempDirectory("cacheTest");
+
+        cache.complete(cache.beginLoad(first), entries(first, 4));
+        cache.complete(cache.beginLoad(second), entries(second, 4));
+        cache.lookup(first);
+        cache.complete(cache.beginLoad(third), entries(third, 4));
+
+        assertNotNull(cache.lookup(first), "Recently used listing should stay");
+        assertNull(cache.lookup(second), "Least recently used listing should be evicted");
+        assertTrue(cache.stats().contains("evictions: 1"));
+    }
+
+    @Test
+    void testInvalidateDuringLoadIsNotCached() throws IOException {
+        DirectoryCache cache = new DirectoryCache(100, 100);
+        Path directory = Files.createTempDirectory("cacheTest");
+
+        DirectoryCache.Load load = cache.beginLoad(directory);
+        cache.invalidate(directory);
+        cache.complete(load, entries(directory, 2));
+
+        assertNull(cache.lookup(directory), "A listing that changed while it was read should not be kept");
+    }
+
+    @Test
+    void testTooLargeDirectoryIsNotCached() throws IOException {
+        DirectoryCache cache = new DirectoryCache(100, 5);
+        Path directory = Files.createTempDirectory("cacheTest");
+
+        cache.complete(cache.beginLoad(directory), entries(directory, 6));
+
+        assertNull(cache.lookup(directory));
+    }
+}
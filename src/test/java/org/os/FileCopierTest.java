@@ -0,0 +1,99 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileCopierTest {
+
+    private Path workingDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("fileCopierTest");
+    }
+
+    @AfterEach
+    void tearDown() {
+        new TreeDeleter(1).delete(workingDir);
+    }
+
+    @Test
+    void testCopiesInParallelChunks() throws IOException {
+        byte[] content = new byte[1_000_003];
+        new Random(42).nextBytes(content);
+        Path source = Files.write(workingDir.resolve("source.bin"), content);
+
+        // 64 KB threshold, the file goes in 4 chunks of 250 KB
+        FileCopier.Result result = new FileCopier(ForkJoinPool.commonPool(), 4, 64 * 1024)
+                .copy(source, workingDir.resolve("copy.bin"), false);
+
+        assertArrayEquals(content, Files.readAllBytes(workingDir.resolve("copy.bin")));
+        assertEquals(1, result.files());
+        assertEquals(content.length, result.bytes());
+    }
+
+    @Test
+    void testCopiesTree() throws IOException {
+        Path source = Files.createDirectories(workingDir.resolve("src/a/b"));
+        Files.writeString(source.resolve("deep.txt"), "deep");
+        Files.writeString(workingDir.resolve("src/top.txt"), "top");
+        Files.createDirectories(workingDir.resolve("src/empty"));
+
+        FileCopier.Result result = new FileCopier().copy(workingDir.resolve("src"), workingDir.resolve("dst"), true);
+
+        assertEquals("deep", Files.readString(workingDir.resolve("dst/a/b/deep.txt")));
+        assertEquals("top", Files.readString(workingDir.resolve("dst/top.txt")));
+        assertTrue(Files.isDirectory(workingDir.resolve("dst/empty")));
+        assertEquals(2, result.files());
+        assertEquals(7, result.bytes());
+    }
+
+    @Test
+    void testRefusesDirectoryWithoutRecursion() throws IOException {
+        Files.createDirectories(workingDir.resolve("src"));
+
+        assertThrows(IOException.class, () -> new FileCopier().copy(workingDir.resolve("src"), workingDir.resolve("dst"), false));
+        assertThrows(IOException.class, () -> new FileCopier().copy(workingDir.resolve("src"), workingDir.resolve("src/inside"), true));
+    }
+
+    @Test
+    void testRefusesToCopyAFileOntoItself() throws IOException {
+        Path source = Files.writeString(workingDir.resolve("a.txt"), "keep me");
+
+        IOException e = assertThrows(IOException.class, () -> new FileCopier().copy(source, workingDir.resolve("./a.txt"), false));
+        assertEquals("'a.txt' and 'a.txt' are the same file", e.getMessage());
+        assertThrows(IOException.class, () -> new FileCopier().copy(source, source, false));
+        assertEquals("keep me", Files.readString(source));
+    }
+
+    @Test
+    void testPreservesPermissionsAndTimes() throws IOException {
+        Path source = Files.createDirectory(workingDir.resolve("source"));
+        Path script = Files.writeString(source.resolve("run.sh"), "echo hi\n");
+        FileTime then = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(script, then);
+        Files.setLastModifiedTime(source, then);
+        boolean posix = script.getFileSystem().supportedFileAttributeViews().contains("posix");
+        if (posix)
+            Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-x---"));
+
+        new FileCopier().copy(source, workingDir.resolve("target"), true, true);
+
+        Path copy = workingDir.resolve("target").resolve("run.sh");
+        assertEquals(then, Files.getLastModifiedTime(copy));
+        assertEquals(then, Files.getLastModifiedTime(workingDir.resolve("target")));
+        if (posix)
+            assertEquals(PosixFilePermissions.fromString("rwxr-x---"), Files.getPosixFilePermissions(copy));
+    }
+}
@@ -0,0 +1,94 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.LongPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileFinderTest {
+
+    private Path workingDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("fileFinderTest");
+        for (int i = 0; i < 20; i++) {
+            Path directory = Files.createDirectories(workingDir.resolve("d" + i).resolve("logs"));
+            Files.writeString(directory.resolve("app.log"), "x".repeat(i * 100));
+            Files.createFile(directory.resolve("notes.txt"));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        new TreeDeleter(1).delete(workingDir);
+    }
+
+    private List<String> find(FileFinder finder) {
+        List<String> found = Collections.synchronizedList(new ArrayList<>());
+        finder.find(workingDir, "root", new FileFinder.Listener() {
+            @Override
+            public void found(String display) {
+                found.add(display);
+            }
+
+            @Override
+            public void failed(String display, IOException e) {
+                fail(display + " " + e);
+            }
+        });
+        return found;
+    }
+
+    // find prints the separator of the platform
+    private static String path(String slashed) {
+        return slashed.replace('/', File.separatorChar);
+    }
+
+    @Test
+    void testFindsByNameAcrossThreads() {
+        // two permits for 41 directories, most of them are walked inline
+        List<String> found = find(new FileFinder("*.log", (char) 0, null, 2));
+
+        assertEquals(20, found.size());
+        assertTrue(found.contains(path("root/d7/logs/app.log")), found.toString());
+    }
+
+    @Test
+    void testFindsByType() {
+        assertEquals(20, find(new FileFinder("logs", 'd', null, 8)).size());
+        assertEquals(0, find(new FileFinder("logs", 'f', null, 8)).size());
+        assertEquals(41, find(new FileFinder(null, 'd', null, 8)).size(), "The root is a directory too");
+    }
+
+    @Test
+    void testFindsBySize() {
+        List<String> found = find(new FileFinder("*.log", 'f', FileFinder.parseSize("+1000c"), 8));
+
+        TreeSet<String> expected = new TreeSet<>();
+        for (int i = 11; i <= 19; i++)
+            expected.add(path("root/d" + i + "/logs/app.log"));
+        assertEquals(expected, new TreeSet<>(found));
+    }
+
+    @Test
+    void testParseSize() {
+        LongPredicate moreThanOneK = FileFinder.parseSize("+1k");
+        assertFalse(moreThanOneK.test(1024));
+        assertTrue(moreThanOneK.test(1025));
+        assertTrue(FileFinder.parseSize("-1k").test(0));
+        assertTrue(FileFinder.parseSize("1").test(512), "No unit means 512 byte blocks");
+        assertThrows(IllegalArgumentException.class, () -> FileFinder.parseSize("1x"));
+    }
+}
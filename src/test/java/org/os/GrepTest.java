@@ -0,0 +1,114 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrepTest {
+
+    private Path workingDir;
+    private Path log;
+    private final String separator = System.lineSeparator();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("grepTest");
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 1000; i++)
+            content.append(i % 100 == 0 ? "line " + i + " ERROR disk full" : "line " + i + " ok").append('\n');
+        log = Files.writeString(workingDir.resolve("app.log"), content);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new TreeDeleter(1).delete(workingDir);
+    }
+
+    @Test
+    void testChunksKeepOrderAndLineNumbers() throws IOException {
+        // 64 byte chunks, the file is searched in a few hundred parallel pieces
+        Grep grep = new Grep("ERROR", true, false, 64, ForkJoinPool.commonPool());
+        OutputSink.MemorySink out = OutputSink.memory();
+
+        long matches = grep.searchFile(log, "", out);
+
+        assertEquals(10, matches);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 100; i <= 1000; i += 100)
+            expected.append(i).append(":line ").append(i).append(" ERROR disk full").append(separator);
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    void testRegexFallback() throws IOException {
+        assertTrue(Grep.isLiteral("disk full"));
+        assertFalse(Grep.isLiteral("line 9+ "));
+        OutputSink.MemorySink out = OutputSink.memory();
+
+        long matches = new Grep("^line 9[0-9] ", false, false, 64, ForkJoinPool.commonPool()).searchFile(log, "app.log:", out);
+
+        assertEquals(10, matches);
+        assertTrue(out.toString().startsWith("app.log:line 90 ok" + separator));
+    }
+
+    @Test
+    void testCountOnly() throws IOException {
+        OutputSink.MemorySink out = OutputSink.memory();
+
+        assertEquals(990, new Grep("ok", false, true).searchFile(log, "", out));
+        assertEquals("", out.toString(), "Counting should not print the lines");
+    }
+
+    @Test
+    void testLiteralAtTheEdges() throws IOException {
+        Path edges = Files.writeString(workingDir.resolve("edges"), "abc\nxabcab\nab\nlast abc");
+        OutputSink.MemorySink out = OutputSink.memory();
+
+        new Grep("abc", true, false).searchFile(edges, "", out);
+
+        assertEquals("1:abc" + separator + "2:xabcab" + separator + "4:last abc" + separator, out.toString());
+    }
+
+    @Test
+    void testSearchStream() throws IOException {
+        OutputSink.MemorySink out = OutputSink.memory();
+
+        long matches = new Grep("b", true, false).searchStream(new ByteArrayInputStream("a\nb\r\nc\nab".getBytes()), "", out);
+
+        assertEquals(2, matches);
+        assertEquals("2:b" + separator + "4:ab" + separator, out.toString());
+    }
+
+    @Test
+    void testRecursiveSkipsUnreadableDirectory() throws IOException {
+        Path locked = Files.createDirectory(workingDir.resolve("locked"));
+        Files.writeString(locked.resolve("hidden.log"), "ERROR inside\n");
+        locked.toFile().setReadable(false);
+        locked.toFile().setExecutable(false);
+        try {
+            // root reads it anyway, nothing to check then
+            if (Files.isReadable(locked))
+                return;
+            OutputSink.MemorySink out = OutputSink.memory();
+            CommandLineInterpreter cli = new CommandLineInterpreter(workingDir.toFile(), DirectoryCache.getDefault(), out);
+
+            cli.grep(List.of("grep", "-r", "-c", "ERROR", "."));
+
+            assertTrue(out.toString().contains("grep: locked: Permission denied"));
+            assertTrue(out.toString().contains("app.log:10"));
+            assertTrue(cli.takeFailure());
+        } finally {
+            locked.toFile().setReadable(true);
+            locked.toFile().setExecutable(true);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputCaptureTest {
+
+    private File workingDir;
+    private Path target;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("captureTest").toFile();
+        target = workingDir.toPath().resolve("captured.txt");
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (File file : workingDir.listFiles()) {
+            file.delete();
+        }
+        workingDir.delete();
+    }
+
+    @Test
+    void testLinesUntilStop() throws IOException {
+        InputCapture.Result result = new InputCapture(0).captureLines(
+                new ByteArrayInputStream("one\ntwo\nstop\nthree\n".getBytes()), target, false);
+
+        assertEquals(2, result.written());
+        assertTrue(result.stopped());
+        assertEquals("one" + System.lineSeparator() + "two" + System.lineSeparator(), Files.readString(target));
+    }
+
+    @Test
+    void testRawStopsAtSentinelLine() throws IOException {
+        byte[] input = "data\nstopper\nxstop\nstop\nafter\n".getBytes();
+
+        InputCapture.Result result = new InputCapture(0).captureRaw(new ByteArrayInputStream(input), target, false);
+
+        assertTrue(result.stopped());
+        assertEquals("data\nstopper\nxstop\n", Files.readString(target));
+        assertEquals(Files.size(target), result.written());
+    }
+
+    @Test
+    void testRawStopAtEndWithoutLineBreak() throws IOException {
+        InputCapture.Result result = new InputCapture(0).captureRaw(new ByteArrayInputStream("a\r\nstop".getBytes()), target, true);
+
+        assertTrue(result.stopped());
+        assertEquals("a\r\n", Files.readString(target));
+    }
+
+    @Test
+    void testRawCopiesLargeBinaryInput() throws IOException {
+        // bigger than the buffer, without any \n so no sentinel can be found
+        byte[] input = new byte[3 * Redirection.BUFFER_SIZE + 17];
+        new Random(7).nextBytes(input);
+        for (int i = 0; i < input.length; i++) {
+            if (input[i] == '\n')
+                input[i] = 0;
+        }
+
+        InputCapture.Result result = new InputCapture(InputCapture.DEFAULT_FLUSH_MILLIS)
+                .captureRaw(new ByteArrayInputStream(input), target, false);
+
+        assertFalse(result.stopped());
+        assertEquals(input.length, result.written());
+        assertArrayEquals(input, Files.readAllBytes(target));
+    }
+}
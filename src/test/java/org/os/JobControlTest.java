@@ -0,0 +1,106 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobControlTest {
+
+    private File workingDir;
+    private OutputSink.MemorySink output;
+    private CommandLineInterpreter cli;
+    private final CommandRegistry registry = CommandRegistry.standard();
+    private final CommandParser parser = new CommandParser();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("jobsTest").toFile();
+        output = OutputSink.memory();
+        cli = new CommandLineInterpreter(workingDir, DirectoryCache.getDefault(), output);
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (File file : workingDir.listFiles()) {
+            file.delete();
+        }
+        workingDir.delete();
+    }
+
+    private void run(String line) throws IOException, ParseException {
+        for (Job job : parser.parse(line))
+            registry.execute(cli, job);
+    }
+
+    @Test
+    void testOutputWaitsForWait() throws IOException, ParseException {
+        Files.writeString(new File(workingDir, "notes.txt").toPath(), "alpha\nbeta\n");
+
+        run("cat notes.txt &");
+        assertEquals("[1] cat notes.txt &" + System.lineSeparator(), output.toString());
+
+        run("wait");
+        String shown = output.toString();
+        assertTrue(shown.contains("alpha" + System.lineSeparator() + "beta"), shown);
+        assertTrue(shown.contains("[1] Done"), shown);
+        assertTrue(cli.getJobs().list().isEmpty(), "wait should collect the job");
+    }
+
+    @Test
+    void testJobHasItsOwnDirectoryAndFailure() throws IOException, ParseException {
+        new File(workingDir, "sub").mkdir();
+
+        run("cd sub & ");
+        run("cat missing &");
+        run("wait 1");
+
+        assertEquals(workingDir, cli.getCurrentDirectory(), "cd in a job should not move the session");
+        assertFalse(cli.takeFailure(), "a successful job should not fail the session");
+
+        run("fg");
+        assertTrue(output.toString().contains("File not found or cannot be read."));
+        assertTrue(output.toString().contains("[2] Exit 1"));
+        assertTrue(cli.takeFailure(), "collecting a failed job should report the failure");
+        new File(workingDir, "sub").delete();
+    }
+
+    @Test
+    void testJobsListsRunningAndFinished() throws IOException, ParseException, InterruptedException {
+        run("pwd &");
+        JobControl.BackgroundJob job = cli.getJobs().list().get(0);
+        while (!job.isDone())
+            Thread.sleep(1);
+
+        run("jobs");
+        assertTrue(output.toString().contains("[1] Done"), output.toString());
+        assertEquals(1, cli.getJobs().list().size(), "jobs should not collect the job");
+    }
+
+    @Test
+    void testUnknownJob() throws IOException, ParseException {
+        run("fg 7");
+
+        assertTrue(output.toString().contains("fg: 7: no such job"));
+    }
+
+    @Test
+    void testJobsDoNotWaitForEachOther() throws IOException, ParseException {
+        // each job would wait for the other one
+        run("wait &");
+        run("fg 1 &");
+
+        run("wait");
+        String shown = output.toString();
+        assertTrue(shown.contains("wait: not allowed in a background job"), shown);
+        assertTrue(shown.contains("fg: not allowed in a background job"), shown);
+        assertTrue(shown.contains("[1] Exit 1") && shown.contains("[2] Exit 1"), shown);
+        assertTrue(cli.getJobs().list().isEmpty(), "wait should collect both jobs");
+    }
+}
@@ -0,0 +1,42 @@
+package org.os;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++)
+            histogram.record(value * 1000);
+
+        assertEquals(100_000, histogram.count());
+        assertEquals(100_000_000, histogram.max());
+        assertEquals(50_000_500, histogram.mean(), 1);
+        assertEquals(50_000_000, histogram.percentile(0.5), 50_000_000 * 0.04);
+        assertEquals(99_000_000, histogram.percentile(0.99), 99_000_000 * 0.04);
+        assertEquals(100_000_000, histogram.percentile(1.0));
+    }
+
+    @Test
+    void testBucketsCoverTheWholeRange() {
+        for (long value : new long[]{0, 1, 31, 32, 33, 63, 64, 1000, 1L << 40, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(LatencyHistogram.highestValue(bucket) >= value, "bucket of " + value + " ends too early");
+            if (bucket > 0)
+                assertTrue(LatencyHistogram.highestValue(bucket - 1) < value, "bucket of " + value + " starts too late");
+        }
+    }
+
+    @Test
+    void testResetAndEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5);
+        histogram.reset();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(0.99));
+    }
+}
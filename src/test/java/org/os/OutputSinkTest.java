@@ -0,0 +1,142 @@
+package org.os;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputSinkTest {
+
+    // counts how often the sink hands its buffer to the target
+    private static class CountingStream extends OutputStream {
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private int writes;
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writes++;
+            content.write(b, off, len);
+        }
+    }
+
+    @Test
+    void testPerCommandFlushesOnce() {
+        CountingStream target = new CountingStream();
+        OutputSink sink = OutputSink.stream(target, OutputSink.FlushPolicy.PER_COMMAND);
+
+        for (int i = 0; i < 1000; i++) {
+            sink.println("line " + i);
+        }
+        assertEquals(0, target.writes, "Nothing should reach the target before the command ends");
+
+        sink.commandFinished();
+        assertEquals(1, target.writes, "The whole command output should go out in one write");
+        assertTrue(target.content.toString().startsWith("line 0" + System.lineSeparator()));
+    }
+
+    @Test
+    void testEveryWriteFlushesEachPrint() {
+        CountingStream target = new CountingStream();
+        OutputSink sink = OutputSink.stream(target, OutputSink.FlushPolicy.EVERY_WRITE);
+
+        sink.println("one");
+        sink.println("two");
+
+        assertEquals(2, target.writes);
+    }
+
+    @Test
+    void testSizeFlushesWhenBufferIsFull() {
+        CountingStream target = new CountingStream();
+        OutputSink sink = OutputSink.stream(target, OutputSink.FlushPolicy.SIZE);
+
+        byte[] block = new byte[1000];
+        for (int i = 0; i < OutputSink.DEFAULT_BUFFER_SIZE / block.length + 1; i++) {
+            sink.write(block, 0, block.length);
+        }
+        sink.commandFinished();
+        sink.beforePrompt();
+
+        assertEquals(1, target.writes, "Only a full buffer should be written");
+    }
+
+    @Test
+    void testMemorySinkKeepsOutput() {
+        OutputSink.MemorySink sink = OutputSink.memory();
+
+        sink.print("a");
+        sink.println("b");
+
+        assertEquals("ab" + System.lineSeparator(), sink.toString());
+    }
+
+    @Test
+    void testFileSinkTransfersFile() throws IOException {
+        Path directory = Files.createTempDirectory("sinkTest");
+        Path source = directory.resolve("source");
+        Path target = directory.resolve("target");
+        Files.writeString(source, "content");
+
+        try (OutputSink sink = OutputSink.file(target, false, OutputSink.FlushPolicy.SIZE);
+             FileChannel channel = FileChannel.open(source)) {
+            sink.print("head ");
+            sink.transferFrom(channel, 0, channel.size());
+        }
+
+        assertEquals("head content", Files.readString(target));
+        new File(source.toString()).delete();
+        new File(target.toString()).delete();
+        directory.toFile().delete();
+    }
+
+    @Test
+    void testFailedTransferSetsError() throws IOException {
+        Path directory = Files.createTempDirectory("sinkTest");
+        Path source = directory.resolve("source");
+        Files.writeString(source, "content");
+        OutputSink sink = OutputSink.stream(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        }, OutputSink.FlushPolicy.SIZE);
+
+        try (FileChannel channel = FileChannel.open(source)) {
+            sink.transferFrom(channel, 0, channel.size());
+        }
+
+        assertTrue(sink.hasError());
+        new File(source.toString()).delete();
+        directory.toFile().delete();
+    }
+
+    @Test
+    void testSpillSinkMovesToAFilePastItsLimit() {
+        OutputSink.SpillSink sink = OutputSink.spilling(100);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            sink.println("line " + i);
+            expected.append("line ").append(i).append(System.lineSeparator());
+        }
+        OutputSink.MemorySink target = OutputSink.memory();
+
+        sink.flush();
+        assertTrue(sink.isSpilled());
+        sink.drainTo(target);
+
+        assertEquals(expected.toString(), target.toString());
+        assertFalse(sink.isSpilled());
+    }
+}
@@ -0,0 +1,116 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineTest {
+
+    private CommandLineInterpreter cli;
+    private File workingDir;
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private final PrintStream console = System.out;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("pipelineTest").toFile();
+        cli = new CommandLineInterpreter(workingDir);
+        System.setOut(new PrintStream(outputStream));
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (File file : workingDir.listFiles()) {
+            file.delete();
+        }
+        workingDir.delete();
+        System.setOut(console);
+    }
+
+    @Test
+    void testSplitStages() {
+        List<List<String>> stages = Pipeline.split(Arrays.asList("cat", "a", "|", "wc", "-l"));
+
+        assertEquals(List.of(List.of("cat", "a"), List.of("wc", "-l")), stages);
+    }
+
+    @Test
+    void testCatIntoWc() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        Files.writeString(new File(workingDir, "big.txt").toPath(), content);
+
+        Pipeline.run(cli, Pipeline.split(Arrays.asList("cat", "big.txt", "|", "cat", "|", "wc", "-l")), CommandRegistry.standard()::execute);
+
+        assertEquals("100000", outputStream.toString().trim(), "Every line should go through the pipeline");
+    }
+
+    @Test
+    void testFailingStageEndsThePipeline() throws InterruptedException {
+        Pipeline.CommandRunner runner = (stageCli, tokens) -> {
+            if (tokens.get(0).equals("boom"))
+                throw new IllegalStateException("boom failed");
+            CommandRegistry.standard().execute(stageCli, tokens);
+        };
+        Throwable[] thrown = new Throwable[1];
+
+        Thread pipeline = new Thread(() -> {
+            try {
+                Pipeline.run(cli, Pipeline.split(Arrays.asList("boom", "|", "cat")), runner);
+            } catch (Throwable e) {
+                thrown[0] = e;
+            }
+        });
+        pipeline.start();
+        pipeline.join(10_000);
+
+        // the cat downstream sees the end of its input instead of waiting for it forever
+        assertFalse(pipeline.isAlive(), "The pipeline should end when a stage throws");
+        assertTrue(thrown[0] instanceof IllegalStateException && thrown[0].getMessage().equals("boom failed"),
+                "The failure of the stage should reach the caller");
+    }
+
+    @Test
+    void testEmptyStageFails() {
+        assertThrows(IOException.class, () -> Pipeline.run(cli, Pipeline.split(Arrays.asList("ls", "|")), CommandRegistry.standard()::execute));
+    }
+
+    @Test
+    void testPipeKeepsByteOrderAcrossWrapAround() throws Exception {
+        BoundedPipe pipe = new BoundedPipe(16);
+        byte[] data = new byte[10_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Thread writer = new Thread(() -> {
+            try (OutputStream sink = pipe.sink()) {
+                sink.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.start();
+
+        byte[] received = pipe.source().readAllBytes();
+        writer.join();
+
+        assertArrayEquals(data, received);
+    }
+
+    @Test
+    void testWriteAfterReaderClosedFails() throws IOException {
+        BoundedPipe pipe = new BoundedPipe(16);
+        pipe.source().close();
+
+        assertThrows(IOException.class, () -> pipe.sink().write(new byte[32]));
+    }
+}
@@ -0,0 +1,110 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedirectionTest {
+
+    private File workingDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("redirectionTest").toFile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (File file : workingDir.listFiles()) {
+            file.delete();
+        }
+        workingDir.delete();
+    }
+
+    @Test
+    void testTruncatesAndAppends() throws IOException {
+        Path target = Redirection.target(workingDir, "out");
+
+        Redirection.write(target, false, "first line\nsecond line\n");
+        Redirection.write(target, false, "replaced\n");
+        Redirection.write(target, true, "appended\n");
+
+        assertEquals("replaced\nappended\n", Files.readString(target));
+    }
+
+    @Test
+    void testCreatesMissingParentDirectories() throws IOException {
+        Path target = Redirection.target(workingDir, "logs/today/out");
+
+        Redirection.write(target, false, "listing\n");
+
+        assertEquals("listing\n", Files.readString(target));
+        Files.delete(target);
+        Files.delete(target.getParent());
+    }
+
+    @Test
+    void testStreamsOutputLargerThanTheBuffer() throws IOException {
+        Path target = Redirection.target(workingDir, "big");
+        StringBuilder expected = new StringBuilder();
+
+        Redirection.write(target, false, writer -> {
+            for (int i = 0; i < 20_000; i++) {
+                String line = "line " + i + System.lineSeparator();
+                writer.write(line);
+                expected.append(line);
+            }
+        });
+
+        assertTrue(expected.length() > Redirection.BUFFER_SIZE);
+        assertEquals(expected.toString(), Files.readString(target, Charset.defaultCharset()));
+    }
+
+    @Test
+    void testCharactersSplitAcrossChunks() throws IOException {
+        Path target = Redirection.target(workingDir, "unicode");
+        // multi-byte characters and surrogate pairs written one char at a time, across every chunk boundary
+        String text = "héllo € 😀 ".repeat(10_000);
+
+        Redirection.write(target, false, writer -> {
+            for (int i = 0; i < text.length(); i++)
+                writer.write(text.charAt(i));
+        });
+
+        assertArrayEquals(text.getBytes(Charset.defaultCharset()), Files.readAllBytes(target));
+    }
+
+    @Test
+    void testManyWritersAtOnce() throws Exception {
+        // more writers than pooled buffers, the ones past the pool write through heap buffers
+        List<Future<?>> writes = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 200; i++) {
+                Path target = Redirection.target(workingDir, "out" + i);
+                String text = ("writer " + i + "\n").repeat(10_000);
+                writes.add(executor.submit(() -> {
+                    Redirection.write(target, false, text);
+                    return null;
+                }));
+            }
+            for (Future<?> write : writes)
+                write.get();
+        }
+
+        for (int i = 0; i < 200; i++)
+            assertEquals(("writer " + i + "\n").repeat(10_000), Files.readString(Redirection.target(workingDir, "out" + i)));
+    }
+}
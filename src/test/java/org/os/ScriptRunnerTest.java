@@ -0,0 +1,74 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptRunnerTest {
+
+    private CommandLineInterpreter cli;
+    private File workingDir;
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private final PrintStream console = System.out;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("scriptTest").toFile();
+        cli = new CommandLineInterpreter(workingDir);
+        System.setOut(new PrintStream(outputStream));
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (File file : workingDir.listFiles()) {
+            file.delete();
+        }
+        workingDir.delete();
+        System.setOut(console);
+    }
+
+    private ScriptRunner.Result run(String script, ScriptRunner.ErrorPolicy errorPolicy) throws IOException {
+        ScriptRunner runner = new ScriptRunner(cli, CommandEngine.standard(), errorPolicy);
+        return runner.run(new BufferedReader(new StringReader(script)));
+    }
+
+    @Test
+    void testRunsEveryLine() throws IOException {
+        ScriptRunner.Result result = run("# setup\ntouch a\n\ntouch b\nls\n", ScriptRunner.ErrorPolicy.CONTINUE);
+
+        assertEquals(3, result.commands());
+        assertEquals(0, result.failures());
+        assertTrue(new File(workingDir, "a").exists() && new File(workingDir, "b").exists());
+    }
+
+    @Test
+    void testContinueCountsFailures() throws IOException {
+        ScriptRunner.Result result = run("cd missing\nnotACommand\ntouch a\n", ScriptRunner.ErrorPolicy.CONTINUE);
+
+        assertEquals(3, result.commands());
+        assertEquals(2, result.failures());
+        assertTrue(new File(workingDir, "a").exists(), "Commands after a failure should still run");
+    }
+
+    @Test
+    void testStopEndsAtFirstFailure() throws IOException {
+        ScriptRunner.Result result = run("cd missing\ntouch a\n", ScriptRunner.ErrorPolicy.STOP);
+
+        assertTrue(result.stopped());
+        assertEquals(1, result.commands());
+        assertFalse(new File(workingDir, "a").exists(), "Nothing should run after the first failure");
+    }
+
+    @Test
+    void testExitEndsScript() throws IOException {
+        ScriptRunner.Result result = run("touch a\nexit\ntouch b\n", ScriptRunner.ErrorPolicy.CONTINUE);
+
+        assertEquals(1, result.commands());
+        assertFalse(new File(workingDir, "b").exists());
+    }
+}
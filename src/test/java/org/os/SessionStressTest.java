@@ -0,0 +1,91 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionStressTest {
+
+    private static final int SESSIONS = 2000;
+
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("sessionStress");
+        for (int i = 0; i < SESSIONS; i++)
+            Files.createDirectory(root.resolve("s" + i));
+    }
+
+    @AfterEach
+    void tearDown() {
+        new TreeDeleter(Runtime.getRuntime().availableProcessors()).delete(root);
+    }
+
+    @Test
+    void testSessionsDoNotSeeEachOther() throws Exception {
+        CommandEngine engine = new CommandEngine(CommandRegistry.standard(), new DirectoryCache(10_000, 1_000));
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<String> problems = new ConcurrentLinkedQueue<>();
+        List<Future<?>> sessions = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < SESSIONS; i++) {
+                int id = i;
+                sessions.add(executor.submit(() -> {
+                    OutputSink.MemorySink output = OutputSink.memory();
+                    CommandLineInterpreter cli = engine.openSession(root.toFile(), output);
+                    start.await();
+                    // everything a session does is in its own directory and its own variables
+                    for (String line : List.of("cd s" + id, "export ID=" + id, "touch f" + id, "mkdir d" + id,
+                            "ls > listing", "pwd", "cat listing", "env")) {
+                        engine.execute(cli, line);
+                        Thread.yield();
+                    }
+                    String expected = "ID=" + id;
+                    String shown = output.toString();
+                    File directory = root.resolve("s" + id).toFile();
+                    if (!cli.getCurrentDirectory().equals(directory))
+                        problems.add(id + ": in " + cli.getCurrentDirectory());
+                    if (!shown.contains(directory.getAbsolutePath() + System.lineSeparator()))
+                        problems.add(id + ": pwd " + shown);
+                    if (!shown.contains("f" + id) || !shown.contains("d" + id) || !shown.contains(expected))
+                        problems.add(id + ": output " + shown);
+                    if (shown.contains("f" + (id + 1) + ",") || cli.takeFailure())
+                        problems.add(id + ": saw another session or failed " + shown);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> session : sessions)
+                session.get();
+        }
+
+        assertTrue(problems.isEmpty(), problems.size() + " sessions went wrong, e.g. " + problems.peek());
+        for (int i = 0; i < SESSIONS; i++) {
+            String[] entries = root.resolve("s" + i).toFile().list();
+            assertEquals(3, entries.length, "s" + i + " should hold its file, directory and listing");
+        }
+    }
+
+    @Test
+    void testSharedRegistryIsFrozen() {
+        CommandEngine engine = CommandEngine.standard();
+
+        assertThrows(IllegalStateException.class, () -> engine.getRegistry().register("late", (cli, invocation) -> { }));
+    }
+}
@@ -0,0 +1,88 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrashTest {
+
+    private Path workingDir;
+    private Path rootsFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("trashTest");
+        rootsFile = workingDir.resolve("roots");
+    }
+
+    @AfterEach
+    void tearDown() {
+        new TreeDeleter(1).delete(workingDir);
+    }
+
+    private Path createTree(String name, int files) throws IOException {
+        Path tree = Files.createDirectories(workingDir.resolve(name).resolve("sub"));
+        for (int i = 0; i < files; i++)
+            Files.createFile(tree.resolve("file" + i));
+        return tree.getParent();
+    }
+
+    @Test
+    void testMovesAwayAndReclaims() throws Exception {
+        Path tree = createTree("tree", 50);
+        Trash trash = new Trash(rootsFile, workingDir, 100_000);
+
+        Path item = trash.moveToTrash(tree);
+
+        assertFalse(Files.exists(tree), "The target should be gone as soon as moveToTrash returns");
+        assertEquals(workingDir.resolve(Trash.DIRECTORY_NAME), item.getParent());
+        assertTrue(trash.awaitEmpty(10_000), "The reclaimer should delete the trashed tree");
+        assertFalse(Files.exists(item));
+        assertTrue(trash.status().contains("52 entries"), trash.status());
+        assertTrue(Files.readString(rootsFile).contains(Trash.DIRECTORY_NAME), "The trash directory should be remembered");
+    }
+
+    @Test
+    void testRecoversPendingItems() throws Exception {
+        Path trashDirectory = Files.createDirectory(workingDir.resolve(Trash.DIRECTORY_NAME));
+        Files.move(createTree("left", 10), trashDirectory.resolve("1-1-left"));
+        Files.writeString(rootsFile, trashDirectory + System.lineSeparator());
+
+        // a new process finds what the previous one did not delete
+        Trash trash = new Trash(rootsFile, workingDir, 100_000);
+
+        assertEquals(1, trash.recover());
+        assertTrue(trash.awaitEmpty(10_000));
+        assertFalse(Files.exists(trashDirectory.resolve("1-1-left")));
+    }
+
+    @Test
+    void testReclaimingIsRateLimited() throws Exception {
+        Path tree = createTree("slow", 98);
+        Trash trash = new Trash(rootsFile, workingDir, 50);
+
+        long start = System.nanoTime();
+        trash.moveToTrash(tree);
+        assertTrue(trash.awaitEmpty(10_000));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        // 100 entries at 50 per second, the first second of slots is available right away
+        assertTrue(millis >= 800, "Reclaiming took only " + millis + " ms");
+    }
+
+    @Test
+    void testRefusesTheTrashItself() throws Exception {
+        Trash trash = new Trash(rootsFile, workingDir, 100_000);
+        trash.moveToTrash(createTree("first", 1));
+
+        assertThrows(IOException.class, () -> trash.moveToTrash(workingDir.resolve(Trash.DIRECTORY_NAME)));
+        assertThrows(IOException.class, () -> trash.moveToTrash(workingDir));
+        trash.awaitEmpty(10_000);
+    }
+}
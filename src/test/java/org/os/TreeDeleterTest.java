@@ -0,0 +1,74 @@
+package org.os;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeDeleterTest {
+
+    private Path workingDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("treeDeleterTest");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (Files.exists(workingDir))
+            new TreeDeleter(1).delete(workingDir);
+    }
+
+    @Test
+    void testDeletesDeepAndWideTree() throws IOException {
+        Path root = workingDir.resolve("root");
+        Path deep = root;
+        for (int depth = 0; depth < 30; depth++) {
+            deep = deep.resolve("d" + depth);
+            Files.createDirectories(deep);
+            Files.writeString(deep.resolve("file"), "x");
+        }
+        for (int i = 0; i < 200; i++)
+            Files.createFile(root.resolve("wide" + i));
+
+        TreeDeleter.Result result = new TreeDeleter(4).delete(root);
+
+        assertFalse(Files.exists(root), "The whole tree should be gone");
+        assertEquals(230, result.files());
+        assertEquals(31, result.directories());
+        assertEquals(0, result.failures());
+        long perThread = result.workers().values().stream().mapToLong(TreeDeleter.WorkerStats::getEntries).sum();
+        assertEquals(result.entries(), perThread, "The worker counters should add up to the totals");
+    }
+
+    @Test
+    void testDoesNotFollowLinks() throws IOException {
+        Path outside = Files.createDirectory(workingDir.resolve("outside"));
+        Path kept = Files.createFile(outside.resolve("kept"));
+        Path root = Files.createDirectory(workingDir.resolve("root"));
+        try {
+            Files.createSymbolicLink(root.resolve("link"), outside);
+        } catch (UnsupportedOperationException | IOException e) {
+            return; // no symbolic links here
+        }
+
+        new TreeDeleter(2).delete(root);
+
+        assertFalse(Files.exists(root));
+        assertTrue(Files.exists(kept), "Files behind a link should not be deleted");
+    }
+
+    @Test
+    void testReportsMissingRoot() {
+        TreeDeleter.Result result = new TreeDeleter(2).delete(workingDir.resolve("missing"));
+
+        assertTrue(result.failures() > 0);
+        assertFalse(result.failureMessages().isEmpty());
+    }
+}